@@ -0,0 +1,55 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Scanning and parsing a large file: every workload repeated until the
+// source reaches the requested size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FrontEndBenchmark {
+    @Param({"1048576"})
+    public int sourceSize;
+
+    private String source;
+    private LoxRuntime runtime;
+
+    @Setup
+    public void generate() {
+        StringBuilder builder = new StringBuilder(sourceSize + 4096);
+        while (builder.length() < sourceSize) {
+            for (String name : Workloads.NAMES) {
+                builder.append(Workloads.source(name)).append('\n');
+            }
+        }
+        source = builder.toString();
+        runtime = new LoxRuntime(Workloads.NULL_OUT, System.err);
+    }
+
+    @Benchmark
+    public TokenBuffer scan() {
+        return new Scanner(source, runtime).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        TokenBuffer tokens = new Scanner(source, runtime).scanTokens();
+        return new Parser(tokens, runtime).parse();
+    }
+}
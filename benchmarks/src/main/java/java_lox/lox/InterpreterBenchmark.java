@@ -0,0 +1,44 @@
+package java_lox.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One op is a complete run of a workload on a fresh runtime. The script is
+// compiled once in setup, so only execution is measured. Run with -prof gc
+// for allocation per op.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InterpreterBenchmark {
+    @Param({"fib", "binary_trees", "method_calls", "string_building", "array_sweep", "closures"})
+    public String workload;
+
+    private CompiledProgram program;
+
+    @Setup
+    public void compile() {
+        program = CompiledProgram.compile(Workloads.source(workload), System.err);
+        if (program == null) throw new IllegalStateException(workload + " does not compile");
+    }
+
+    @Benchmark
+    public LoxRuntime run() {
+        LoxRuntime runtime = program.run(Workloads.NULL_OUT, System.err);
+        if (runtime.hadRuntimeError()) throw new IllegalStateException(workload + " failed");
+        return runtime;
+    }
+}
@@ -0,0 +1,29 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// The Lox programs under src/main/resources/workloads.
+final class Workloads {
+    static final String[] NAMES = {
+        "fib", "binary_trees", "method_calls", "string_building", "array_sweep", "closures"
+    };
+
+    // benchmarks measure the interpreter, not the terminal
+    static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private Workloads() {}
+
+    static String source(String name) {
+        try (InputStream in = Workloads.class.getResourceAsStream("/workloads/" + name + ".lox")) {
+            if (in == null) throw new IllegalArgumentException("No workload named " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package java_lox.lox;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs the actors of one runtime. Actors are multiplexed over a shared pool
+// with one carrier thread per core. An actor with mail is queued on the pool
+// once and then handles up to BATCH messages before yielding its carrier to
+// the next actor. Messages that block (a channel receive, say) hold a carrier.
+class ActorSystem {
+    private static final int BATCH = 64;
+    private static final ForkJoinPool carriers = new ForkJoinPool(
+        Runtime.getRuntime().availableProcessors(),
+        ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+    private final LoxRuntime runtime;
+
+    // messages sent but not yet handled, for await()
+    private final AtomicLong pending = new AtomicLong();
+
+    private final LongAdder spawned = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    ActorSystem(LoxRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    LoxActor spawn(LoxInstance instance) {
+        spawned.increment();
+        return new LoxActor(instance, this);
+    }
+
+    void send(LoxActor actor, LoxActor.Message message) {
+        pending.incrementAndGet();
+        sent.increment();
+
+        int depth = actor.post(message);
+        int max = maxDepth.get();
+        while (depth > max && !maxDepth.compareAndSet(max, depth)) {
+            max = maxDepth.get();
+        }
+
+        if (actor.claim()) schedule(actor);
+    }
+
+    private void schedule(LoxActor actor) {
+        carriers.execute(() -> drain(actor));
+    }
+
+    private void drain(LoxActor actor) {
+        Interpreter worker = runtime.interpreter.fork();
+        for (int i = 0; i < BATCH; i++) {
+            LoxActor.Message message = actor.poll();
+            if (message == null) break;
+
+            try {
+                message.method.call(worker, message.arguments);
+            } catch (RuntimeError error) {
+                runtime.runtimeError(error);
+            } finally {
+                handled.increment();
+                finished();
+            }
+        }
+        if (actor.release()) schedule(actor);
+    }
+
+    private void finished() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // blocks until every mailbox is empty and no message is being handled
+    synchronized void await() {
+        boolean interrupted = false;
+        while (pending.get() > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    String stats() {
+        return "actors=" + spawned.sum() +
+               " sent=" + sent.sum() +
+               " handled=" + handled.sum() +
+               " pending=" + pending.get() +
+               " maxMailbox=" + maxDepth.get();
+    }
+}
@@ -0,0 +1,97 @@
+package java_lox.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Precompiled AST next to the script (script.lox -> script.loxc). The cache
+// holds the resolved tree and is only used while the SHA-256 of the source
+// still matches the one recorded in its header.
+class AstCache {
+    private static final int MAGIC = 0x4c4f5843; // "LOXC"
+    private static final int VERSION = 4;
+    private static final int HASH_LENGTH = 32;
+
+    private final Path cache;
+    private final byte[] hash;
+
+    AstCache(Path source) throws IOException {
+        String name = source.getFileName().toString();
+        this.cache = source.resolveSibling(name.endsWith(".lox") ? name + "c" : name + ".loxc");
+        this.hash = hash(source);
+    }
+
+    // false if store() can't succeed, e.g. in a read-only directory
+    boolean isWritable() {
+        return Files.isWritable(cache.toAbsolutePath().getParent());
+    }
+
+    // the cached statements, or null when the cache is missing or stale
+    List<Stmt> load(Map<Expr, Integer> locals) {
+        if (!Files.isRegularFile(cache)) return null;
+
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+
+            byte[] recorded = new byte[HASH_LENGTH];
+            in.get(recorded);
+            if (!Arrays.equals(recorded, hash)) return null;
+
+            return new AstReader(in, locals).read();
+        } catch (IOException | RuntimeException error) {
+            // unreadable or corrupt cache: fall back to compiling the source
+            return null;
+        }
+    }
+
+    // Best effort: the cache is written to a temporary file and moved into
+    // place so that concurrent runs never see a partially written cache.
+    void store(List<Stmt> statements, Map<Expr, Integer> locals) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(cache.toAbsolutePath().getParent(),
+                    cache.getFileName().toString(), ".tmp");
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(hash);
+                new AstWriter(locals).write(statements, out);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException error) {
+            // a read-only directory just means no cache
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static byte[] hash(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            digest.update(bytes);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package java_lox.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java_lox.lox.AstWriter.*;
+
+// Rebuilds the syntax tree written by AstWriter and puts the recorded scope
+// depths back into a resolution table, so the tree runs without being resolved.
+class AstReader {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+    private final Map<Expr, Integer> locals;
+    private String[] strings;
+
+    AstReader(ByteBuffer in, Map<Expr, Integer> locals) {
+        this.in = in;
+        this.locals = locals;
+    }
+
+    List<Stmt> read() {
+        strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString();
+        }
+        return readStatements();
+    }
+
+    private List<Stmt> readStatements() {
+        int count = readInt();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStmt());
+        }
+        return statements;
+    }
+
+    private List<Stmt.Function> readFunctions() {
+        int count = readInt();
+        List<Stmt.Function> functions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            functions.add((Stmt.Function)readStmt());
+        }
+        return functions;
+    }
+
+    private Stmt readStmt() {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL: return null;
+            case BLOCK: return new Stmt.Block(readStatements());
+            case BREAK: return new Stmt.Break(readToken());
+            case CONTINUE: return new Stmt.Continue(readToken());
+            case SWITCH: {
+                Token keyword = readToken();
+                Expr value = readExpr();
+                int count = readInt();
+                List<List<Object>> labels = new ArrayList<>(count);
+                List<Stmt> bodies = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int size = readInt();
+                    List<Object> values = new ArrayList<>(size);
+                    for (int j = 0; j < size; j++) values.add(readLiteral());
+                    labels.add(values);
+                    bodies.add(readStmt());
+                }
+                Stmt otherwise = readStmt();
+                return new Stmt.Switch(keyword, value, labels, bodies, otherwise, SwitchTable.of(labels));
+            }
+            case CLASS: {
+                Token name = readToken();
+                List<Stmt.Function> methods = readFunctions();
+                Expr.Variable superclass = (Expr.Variable)readExpr();
+                return new Stmt.Class(name, methods, superclass, readFunctions());
+            }
+            case EXPRESSION: return new Stmt.Expression(readExpr());
+            case FUNCTION_STMT: {
+                Token name = readToken();
+                return new Stmt.Function(name, (Expr.Function)readExpr());
+            }
+            case IF: {
+                Expr condition = readExpr();
+                Stmt thenBranch = readStmt();
+                return new Stmt.If(condition, thenBranch, readStmt());
+            }
+            case PRINT: return Superinstructions.print(readExpr());
+            case RETURN: {
+                Token keyword = readToken();
+                return new Stmt.Return(keyword, readExpr());
+            }
+            case WHILE: {
+                Expr condition = readExpr();
+                Stmt body = readStmt();
+                return new Stmt.While(condition, body, readExpr());
+            }
+            case VAR: {
+                Token name = readToken();
+                return new Stmt.Var(name, readExpr());
+            }
+        }
+        throw new IllegalStateException("Corrupt AST cache: statement tag " + tag);
+    }
+
+    private Expr readExpr() {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL: return null;
+            case ASSIGN: {
+                Token name = readToken();
+                return resolved(Superinstructions.assign(name, readExpr()));
+            }
+            case BINARY: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return Superinstructions.binary(left, operator, readExpr());
+            }
+            case CALL: {
+                Expr callee = readExpr();
+                Token paren = readToken();
+                int count = readInt();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(readExpr());
+                }
+                return new Expr.Call(callee, paren, arguments);
+            }
+            case GET: {
+                Expr object = readExpr();
+                return Superinstructions.get(object, readToken());
+            }
+            case SET: {
+                Expr object = readExpr();
+                Token name = readToken();
+                return new Expr.Set(object, name, readExpr());
+            }
+            case SUPER: {
+                Token keyword = readToken();
+                return resolved(new Expr.Super(keyword, readToken()));
+            }
+            case SELF: return resolved(new Expr.Self(readToken()));
+            case FUNCTION: {
+                int count = readInt();
+                List<Token> parameters = null;
+                if (count >= 0) {
+                    parameters = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        parameters.add(readToken());
+                    }
+                }
+                return new Expr.Function(parameters, readStatements());
+            }
+            case GROUPING: return new Expr.Grouping(readExpr());
+            case LITERAL: return new Expr.Literal(readLiteral());
+            case LOGICAL: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Logical(left, operator, readExpr());
+            }
+            case UNARY: {
+                Token operator = readToken();
+                return new Expr.Unary(operator, readExpr());
+            }
+            case CONDITIONAL: {
+                Expr condition = readExpr();
+                Expr thenBranch = readExpr();
+                return new Expr.Conditional(condition, thenBranch, readExpr());
+            }
+            case VARIABLE: return resolved(new Expr.Variable(readToken()));
+        }
+        throw new IllegalStateException("Corrupt AST cache: expression tag " + tag);
+    }
+
+    // the depth follows the node's fields
+    private Expr resolved(Expr expr) {
+        int depth = readInt();
+        if (depth >= 0) locals.put(expr, depth);
+        return expr;
+    }
+
+    private Token readToken() {
+        TokenType type = TOKEN_TYPES[in.get()];
+        String lexeme = strings[readInt()];
+        Object literal = readLiteral();
+        return new Token(type, lexeme, literal, readInt());
+    }
+
+    private Object readLiteral() {
+        byte tag = in.get();
+        switch (tag) {
+            case NIL_VALUE: return null;
+            case FALSE_VALUE: return false;
+            case TRUE_VALUE: return true;
+            case NUMBER_VALUE: return in.getDouble();
+            case INTEGER_VALUE: return in.getLong();
+            case STRING_VALUE: return strings[readInt()];
+        }
+        throw new IllegalStateException("Corrupt AST cache: literal tag " + tag);
+    }
+
+    private int readInt() {
+        int bits = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            bits |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    private String readString() {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
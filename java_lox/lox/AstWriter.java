@@ -0,0 +1,408 @@
+package java_lox.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Serializes a resolved syntax tree into the compact binary form read back by
+// AstReader. Every node is a one byte tag followed by its fields in
+// declaration order; lexemes and string literals go into a shared string
+// table and resolved variables carry their scope depth (-1 for globals).
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    static final byte NULL = 0;
+
+    // Expr tags
+    static final byte ASSIGN = 1;
+    static final byte BINARY = 2;
+    static final byte CALL = 3;
+    static final byte GET = 4;
+    static final byte SET = 5;
+    static final byte SUPER = 6;
+    static final byte SELF = 7;
+    static final byte FUNCTION = 8;
+    static final byte GROUPING = 9;
+    static final byte LITERAL = 10;
+    static final byte LOGICAL = 11;
+    static final byte UNARY = 12;
+    static final byte CONDITIONAL = 13;
+    static final byte VARIABLE = 14;
+
+    // Stmt tags
+    static final byte BLOCK = 32;
+    static final byte CLASS = 33;
+    static final byte EXPRESSION = 34;
+    static final byte FUNCTION_STMT = 35;
+    static final byte IF = 36;
+    static final byte PRINT = 37;
+    static final byte RETURN = 38;
+    static final byte WHILE = 39;
+    static final byte VAR = 40;
+    static final byte BREAK = 41;
+    static final byte CONTINUE = 42;
+    static final byte SWITCH = 43;
+
+    // literal tags
+    static final byte NIL_VALUE = 0;
+    static final byte FALSE_VALUE = 1;
+    static final byte TRUE_VALUE = 2;
+    static final byte NUMBER_VALUE = 3;
+    static final byte STRING_VALUE = 4;
+    static final byte INTEGER_VALUE = 5;
+
+    private final Map<Expr, Integer> locals;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    AstWriter(Map<Expr, Integer> locals) {
+        this.locals = locals;
+    }
+
+    // string table followed by the statements
+    void write(List<Stmt> statements, DataOutputStream target) throws IOException {
+        writeStatements(statements);
+        out.flush();
+
+        // the string table is written raw, ahead of the varint-encoded tree
+        target.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            target.writeInt(utf8.length);
+            target.write(utf8);
+        }
+        bytes.writeTo(target);
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        tag(ASSIGN);
+        writeToken(expr.name);
+        writeExpr(expr.value);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        tag(BINARY);
+        writeExpr(expr.left);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        writeExpr(expr.callee);
+        writeToken(expr.paren);
+        writeInt(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            writeExpr(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        tag(GET);
+        writeExpr(expr.object);
+        writeToken(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        tag(SET);
+        writeExpr(expr.object);
+        writeToken(expr.name);
+        writeExpr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        tag(SUPER);
+        writeToken(expr.keyword);
+        writeToken(expr.method);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitSelfExpr(Expr.Self expr) {
+        tag(SELF);
+        writeToken(expr.keyword);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionExpr(Expr.Function expr) {
+        tag(FUNCTION);
+        // getters have no parameter list at all
+        if (expr.parameters == null) {
+            writeInt(-1);
+        } else {
+            writeInt(expr.parameters.size());
+            for (Token parameter : expr.parameters) {
+                writeToken(parameter);
+            }
+        }
+        writeStatements(expr.body);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        writeExpr(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        tag(LITERAL);
+        writeLiteral(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        tag(LOGICAL);
+        writeExpr(expr.left);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitConditionalExpr(Expr.Conditional expr) {
+        tag(CONDITIONAL);
+        writeExpr(expr.condition);
+        writeExpr(expr.thenBranch);
+        writeExpr(expr.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        writeToken(expr.name);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        tag(BLOCK);
+        writeStatements(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        tag(BREAK);
+        writeToken(stmt.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        tag(CONTINUE);
+        writeToken(stmt.keyword);
+        return null;
+    }
+
+    // the jump table is rebuilt from the labels on load
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        tag(SWITCH);
+        writeToken(stmt.keyword);
+        writeExpr(stmt.value);
+        writeInt(stmt.labels.size());
+        for (int i = 0; i < stmt.labels.size(); i++) {
+            writeInt(stmt.labels.get(i).size());
+            for (Object label : stmt.labels.get(i)) writeLiteral(label);
+            writeStmt(stmt.bodies.get(i));
+        }
+        writeStmt(stmt.otherwise);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        tag(CLASS);
+        writeToken(stmt.name);
+        writeFunctions(stmt.methods);
+        writeExpr(stmt.superclass);
+        writeFunctions(stmt.classMethods);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION);
+        writeExpr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tag(FUNCTION_STMT);
+        writeToken(stmt.name);
+        writeExpr(stmt.function);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        tag(IF);
+        writeExpr(stmt.condition);
+        writeStmt(stmt.thenBranch);
+        writeStmt(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT);
+        writeExpr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tag(RETURN);
+        writeToken(stmt.keyword);
+        writeExpr(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        tag(WHILE);
+        writeExpr(stmt.condition);
+        writeStmt(stmt.body);
+        writeExpr(stmt.increment);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR);
+        writeToken(stmt.name);
+        writeExpr(stmt.initializer);
+        return null;
+    }
+
+    private void writeStatements(List<Stmt> statements) {
+        writeInt(statements.size());
+        for (Stmt statement : statements) {
+            writeStmt(statement);
+        }
+    }
+
+    private void writeFunctions(List<Stmt.Function> functions) {
+        writeInt(functions.size());
+        for (Stmt.Function function : functions) {
+            writeStmt(function);
+        }
+    }
+
+    private void writeStmt(Stmt stmt) {
+        if (stmt == null) {
+            tag(NULL);
+            return;
+        }
+        stmt.accept(this);
+    }
+
+    private void writeExpr(Expr expr) {
+        if (expr == null) {
+            tag(NULL);
+            return;
+        }
+        expr.accept(this);
+    }
+
+    private void writeDepth(Expr expr) {
+        Integer depth = locals.get(expr);
+        writeInt(depth == null ? -1 : depth);
+    }
+
+    private void writeToken(Token token) {
+        tag((byte)token.type.ordinal());
+        writeString(token.lexeme);
+        writeLiteral(token.literal);
+        writeInt(token.line);
+    }
+
+    private void writeLiteral(Object value) {
+        try {
+            if (value == null) {
+                out.writeByte(NIL_VALUE);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean)value ? TRUE_VALUE : FALSE_VALUE);
+            } else if (value instanceof Long) {
+                out.writeByte(INTEGER_VALUE);
+                out.writeLong((Long)value);
+            } else if (value instanceof Double) {
+                out.writeByte(NUMBER_VALUE);
+                out.writeDouble((Double)value);
+            } else {
+                out.writeByte(STRING_VALUE);
+                writeString((String)value);
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void writeString(String string) {
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            strings.add(string);
+            stringIds.put(string, id);
+        }
+        writeInt(id);
+    }
+
+    private void tag(byte tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // zigzag varint: small counts, ids, lines and depths take a single byte
+    private void writeInt(int value) {
+        int bits = (value << 1) ^ (value >> 31);
+        try {
+            while ((bits & ~0x7f) != 0) {
+                out.writeByte((bits & 0x7f) | 0x80);
+                bits >>>= 7;
+            }
+            out.writeByte(bits);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package java_lox.lox;
+
+import java.util.Arrays;
+
+// Shadow stack of the Lox frames one Interpreter is executing: the function
+// names pushed by LoxFunction.call and, for every frame that is itself making
+// a call, the line of that call. The owning thread writes it with plain
+// stores; the profiler's sampler reads it racily and may see a frame that is
+// just being pushed or popped, which is fine for a statistical profile.
+class CallStack {
+    private String[] names = new String[64];
+    private int[] lines = new int[64];
+    private int depth = 0;
+
+    void push(String name) {
+        if (depth == names.length) {
+            names = Arrays.copyOf(names, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2);
+        }
+        names[depth] = name;
+        lines[depth] = 0;
+        depth++;
+    }
+
+    void pop() {
+        depth--;
+    }
+
+    // line of the call the top frame is about to make
+    void setLine(int line) {
+        if (depth > 0) lines[depth - 1] = line;
+    }
+
+    boolean isEmpty() {
+        return depth == 0;
+    }
+
+    // Root first, frames separated by ';', the format flame graph tools read.
+    // Null if the stack is empty.
+    String collapsed() {
+        String[] names = this.names;
+        int[] lines = this.lines;
+        int depth = Math.min(this.depth, Math.min(names.length, lines.length));
+        if (depth <= 0) return null;
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            String name = names[i];
+            if (name == null) return null;
+            if (i > 0) builder.append(';');
+            builder.append(name);
+            if (i < depth - 1) builder.append(':').append(lines[i]);
+        }
+        return builder.toString();
+    }
+}
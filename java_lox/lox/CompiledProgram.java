@@ -0,0 +1,72 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A script that has been scanned, parsed and resolved once and can then be run
+// any number of times, from any number of threads. The syntax tree and the
+// resolution table are never written after compile() returns; everything a run
+// mutates (globals, environments, instances, error flags) lives in the fresh
+// LoxRuntime that run() creates for it.
+public final class CompiledProgram {
+    private final List<Stmt> statements;
+    private final Map<Expr, Integer> locals;
+
+    private CompiledProgram(List<Stmt> statements, Map<Expr, Integer> locals) {
+        this.statements = Collections.unmodifiableList(statements);
+        this.locals = Collections.unmodifiableMap(locals);
+    }
+
+    // Returns null if the source has syntax or resolution errors; they are
+    // reported to err. Function bodies are always parsed eagerly, since a lazy
+    // body would be resolved later by whichever run calls it first.
+    public static CompiledProgram compile(String source, PrintStream err) {
+        Map<Expr, Integer> locals = new HashMap<>();
+        LoxRuntime compiler = new LoxRuntime(err, err, locals);
+        LoxEvents.Phase phase = LoxEvents.beginPhase("compile");
+        try {
+            Parser parser = new Parser(new Scanner(source, compiler).scanTokens(), compiler);
+            List<Stmt> statements = parser.parse();
+            if (compiler.hadError) return null;
+
+            new Resolver(locals, compiler).resolve(statements);
+            if (compiler.hadError) return null;
+
+            return new CompiledProgram(statements, locals);
+        } finally {
+            LoxEvents.endPhase(phase);
+        }
+    }
+
+    // Like compile(String), but goes through the file's .loxc cache.
+    public static CompiledProgram compile(Path source, PrintStream err) throws IOException {
+        AstCache cache = new AstCache(source);
+        Map<Expr, Integer> locals = new HashMap<>();
+
+        List<Stmt> statements = cache.load(locals);
+        if (statements != null) return new CompiledProgram(statements, locals);
+
+        CompiledProgram program = compile(Files.readString(source, Charset.defaultCharset()), err);
+        if (program != null) cache.store(program.statements, program.locals);
+        return program;
+    }
+
+    // One independent run with its own globals. The returned runtime reports
+    // whether the run hit a runtime error.
+    public LoxRuntime run(PrintStream out, PrintStream err) {
+        LoxRuntime runtime = new LoxRuntime(out, err, locals);
+        LoxEvents.Phase phase = LoxEvents.beginPhase("execute");
+        runtime.interpreter.interpret(statements);
+        runtime.awaitTasks();
+        runtime.output().flush();
+        LoxEvents.endPhase(phase);
+        return runtime;
+    }
+}
@@ -0,0 +1,243 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Interpreter that counts how often every Stmt and Expr node runs and how
+// long every function takes, for tuning scripts. It is a subclass so that the
+// plain Interpreter stays free of any bookkeeping. Function time is self time:
+// the time spent in callees is subtracted, so recursion isn't counted twice.
+class CountingInterpreter extends Interpreter {
+    private static class FunctionStats {
+        final String name;
+        final LongAdder calls = new LongAdder();
+        final LongAdder selfNanos = new LongAdder();
+
+        FunctionStats(String name) {
+            this.name = name;
+        }
+    }
+
+    // shared by all forks of this interpreter
+    private final Map<Object, LongAdder> counts;
+    private final Map<Expr.Function, FunctionStats> functions;
+    private final Map<Expr.Function, Integer> functionLines;
+
+    // time spent in callees of each active call on this thread
+    private long[] childNanos = new long[64];
+    private int depth = 0;
+
+    CountingInterpreter(LoxRuntime runtime, Map<Expr, Integer> locals) {
+        super(runtime, locals);
+        counts = new ConcurrentHashMap<>();
+        functions = new ConcurrentHashMap<>();
+        functionLines = new ConcurrentHashMap<>();
+    }
+
+    private CountingInterpreter(CountingInterpreter parent) {
+        super(parent);
+        counts = parent.counts;
+        functions = parent.functions;
+        functionLines = parent.functionLines;
+    }
+
+    @Override
+    Interpreter fork() {
+        return new CountingInterpreter(this);
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        count(expr);
+        return super.evaluate(expr);
+    }
+
+    @Override
+    void execute(Stmt stmt) {
+        count(stmt);
+        super.execute(stmt);
+    }
+
+    private void count(Object node) {
+        counts.computeIfAbsent(node, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    Object call(LoxCallable function, List<Object> arguments) {
+        if (!(function instanceof LoxFunction)) return super.call(function, arguments);
+
+        LoxFunction callee = (LoxFunction)function;
+        if (depth == childNanos.length) childNanos = Arrays.copyOf(childNanos, depth * 2);
+        childNanos[depth++] = 0;
+        long start = System.nanoTime();
+        try {
+            return super.call(function, arguments);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long self = elapsed - childNanos[--depth];
+            if (depth > 0) childNanos[depth - 1] += elapsed;
+
+            FunctionStats stats = functions.computeIfAbsent(callee.declaration(),
+                key -> new FunctionStats(callee.name()));
+            stats.calls.increment();
+            stats.selfNanos.add(self);
+        }
+    }
+
+    // the declarations are where the function names' tokens are
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        functionLines.put(stmt.function, stmt.name.line);
+        return super.visitFunctionStmt(stmt);
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        for (Stmt.Function method : stmt.methods) functionLines.put(method.function, method.name.line);
+        for (Stmt.Function method : stmt.classMethods) functionLines.put(method.function, method.name.line);
+        return super.visitClassStmt(stmt);
+    }
+
+    void report(Path path) throws IOException {
+        List<Map.Entry<Expr.Function, FunctionStats>> byTime = new ArrayList<>(functions.entrySet());
+        byTime.sort((a, b) -> Long.compare(b.getValue().selfNanos.sum(), a.getValue().selfNanos.sum()));
+
+        List<Map.Entry<Object, LongAdder>> byCount = new ArrayList<>(counts.entrySet());
+        byCount.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+
+        NodeLines lines = new NodeLines();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            writer.println("Functions by self time");
+            writer.printf("%12s %12s %6s  %s%n", "self ms", "calls", "line", "function");
+            for (Map.Entry<Expr.Function, FunctionStats> entry : byTime) {
+                FunctionStats stats = entry.getValue();
+                writer.printf("%12.3f %12d %6s  %s%n", stats.selfNanos.sum() / 1e6, stats.calls.sum(),
+                              line(functionLines.getOrDefault(entry.getKey(), 0)), stats.name);
+            }
+
+            writer.println();
+            writer.println("Nodes by execution count");
+            writer.printf("%12s %6s  %s%n", "count", "line", "node");
+            for (Map.Entry<Object, LongAdder> entry : byCount) {
+                Object node = entry.getKey();
+                int line = node instanceof Expr ? ((Expr)node).accept(lines) : ((Stmt)node).accept(lines);
+                writer.printf("%12d %6s  %s%n", entry.getValue().sum(), line(line), describe(node));
+            }
+        }
+    }
+
+    private static String line(int line) {
+        return line > 0 ? Integer.toString(line) : "?";
+    }
+
+    private static String describe(Object node) {
+        // fused nodes report as the node they extend
+        Class<?> type = node.getClass();
+        if (type.getEnclosingClass() == Superinstructions.class) type = type.getSuperclass();
+        String kind = type.getName();
+        kind = kind.substring(kind.lastIndexOf('.') + 1).replace('$', '.');
+        if (node instanceof Expr.Binary) return kind + " " + ((Expr.Binary)node).operator.lexeme;
+        if (node instanceof Expr.Logical) return kind + " " + ((Expr.Logical)node).operator.lexeme;
+        if (node instanceof Expr.Variable) return kind + " " + ((Expr.Variable)node).name.lexeme;
+        if (node instanceof Expr.Assign) return kind + " " + ((Expr.Assign)node).name.lexeme;
+        if (node instanceof Expr.Get) return kind + " " + ((Expr.Get)node).name.lexeme;
+        if (node instanceof Expr.Set) return kind + " " + ((Expr.Set)node).name.lexeme;
+        return kind;
+    }
+
+    // Source line of a node: its own token where it has one, otherwise the
+    // line of its first child. 0 if there is none (a literal).
+    private static class NodeLines implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+        @Override
+        public Integer visitAssignExpr(Expr.Assign expr) { return expr.name.line; }
+
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr) { return expr.operator.line; }
+
+        @Override
+        public Integer visitCallExpr(Expr.Call expr) { return expr.paren.line; }
+
+        @Override
+        public Integer visitGetExpr(Expr.Get expr) { return expr.name.line; }
+
+        @Override
+        public Integer visitSetExpr(Expr.Set expr) { return expr.name.line; }
+
+        @Override
+        public Integer visitSuperExpr(Expr.Super expr) { return expr.keyword.line; }
+
+        @Override
+        public Integer visitSelfExpr(Expr.Self expr) { return expr.keyword.line; }
+
+        @Override
+        public Integer visitFunctionExpr(Expr.Function expr) {
+            if (!expr.parameters.isEmpty()) return expr.parameters.get(0).line;
+            return 0;
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr) { return expr.expression.accept(this); }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) { return 0; }
+
+        @Override
+        public Integer visitLogicalExpr(Expr.Logical expr) { return expr.operator.line; }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr) { return expr.operator.line; }
+
+        @Override
+        public Integer visitConditionalExpr(Expr.Conditional expr) { return expr.condition.accept(this); }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) { return expr.name.line; }
+
+        @Override
+        public Integer visitBlockStmt(Stmt.Block stmt) {
+            return stmt.statements.isEmpty() ? 0 : stmt.statements.get(0).accept(this);
+        }
+
+        @Override
+        public Integer visitBreakStmt(Stmt.Break stmt) { return stmt.keyword.line; }
+
+        @Override
+        public Integer visitClassStmt(Stmt.Class stmt) { return stmt.name.line; }
+
+        @Override
+        public Integer visitContinueStmt(Stmt.Continue stmt) { return stmt.keyword.line; }
+
+        @Override
+        public Integer visitExpressionStmt(Stmt.Expression stmt) { return stmt.expression.accept(this); }
+
+        @Override
+        public Integer visitFunctionStmt(Stmt.Function stmt) { return stmt.name.line; }
+
+        @Override
+        public Integer visitIfStmt(Stmt.If stmt) { return stmt.condition.accept(this); }
+
+        @Override
+        public Integer visitPrintStmt(Stmt.Print stmt) { return stmt.expression.accept(this); }
+
+        @Override
+        public Integer visitReturnStmt(Stmt.Return stmt) { return stmt.keyword.line; }
+
+        @Override
+        public Integer visitWhileStmt(Stmt.While stmt) { return stmt.condition.accept(this); }
+
+        @Override
+        public Integer visitSwitchStmt(Stmt.Switch stmt) { return stmt.keyword.line; }
+
+        @Override
+        public Integer visitVarStmt(Stmt.Var stmt) { return stmt.name.line; }
+    }
+}
@@ -1,5 +1,6 @@
 package java_lox.lox;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,14 +9,17 @@ class Environment {
     final Environment enclosing;
 
     // In order to store variables and values.
-    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Object> values;
 
+    // the global scope, which every Lox task defines into and reads from
     Environment() {
         enclosing = null;
+        values = Collections.synchronizedMap(new HashMap<>());
     }
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        values = new HashMap<>();
     }
 
     Object get(Token name) {
@@ -9,12 +9,28 @@ import java.util.Map;
 //The class use to refer to a Lox value
 class Interpreter implements Expr.Visitor<Object>,  
                              Stmt.Visitor<Void>    {
-    final Environment globals = new Environment();
-    private final Map<Expr, Integer> locals = new HashMap<>();
-    private Environment environment = globals;
+    final LoxRuntime runtime;
+    final Environment globals;
+    // resolution table: scope depth of every local variable access
+    final Map<Expr, Integer> locals;
+    // current scope of the thread driving this interpreter
+    private Environment environment;
+    // Lox frames for the sampling profiler, null unless it is on
+    CallStack frames;
     private static Object uninitialized = new Object();
 
-    Interpreter() {
+    // How the last statement finished. break and continue set it and return
+    // normally; blocks stop early while it isn't NORMAL and the enclosing
+    // loop resets it, so leaving a loop early throws nothing.
+    private enum Completion { NORMAL, BREAK, CONTINUE }
+    private Completion completion = Completion.NORMAL;
+
+    Interpreter(LoxRuntime runtime, Map<Expr, Integer> locals) {
+        this.runtime = runtime;
+        this.locals = locals;
+        this.globals = new Environment();
+        this.environment = globals;
+
         globals.define("clock", new LoxCallable() {
           @Override
           public int arity() { return 0; }
@@ -22,7 +38,7 @@ class Interpreter implements Expr.Visitor<Object>,
           @Override
           public Object call(Interpreter interpreter,
                              List<Object> arguments) {
-            return (double)System.currentTimeMillis() / 1000.0;
+            return LoxNumbers.of(System.currentTimeMillis() / 1000.0);
           }
     
           @Override
@@ -37,14 +53,181 @@ class Interpreter implements Expr.Visitor<Object>,
 
             @Override
             public Object call(Interpreter interpreter, List<Object> arguments) {
-                int size = (int)(double)arguments.get(0);
+                int size = LoxNumbers.index(arguments.get(0), Integer.MAX_VALUE - 8);
                 return new LoxArray(size);
             }
         });
+
+        LoxFiles.define(globals);
+
+        globals.define("flush", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                runtime.output().flush();
+                return null;
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("spawn", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object function = arguments.get(0);
+                if (!(function instanceof LoxCallable) || ((LoxCallable)function).arity() != 0) {
+                    throw new RuntimeError(null, "Can only spawn functions without parameters.");
+                }
+                return LoxTask.spawn(interpreter, (LoxCallable)function);
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("Channel", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object capacity = arguments.get(0);
+                if (!(capacity instanceof Long) || (long)capacity < 0 || (long)capacity > Integer.MAX_VALUE) {
+                    throw new RuntimeError(null, "Channel capacity must be a non-negative integer.");
+                }
+                return new LoxChannel((int)(long)capacity);
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("actor", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            // actor(Counter) or actor(fun() { return Counter(10); }): the
+            // instance is made here and only the actor ever sees it
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object factory = arguments.get(0);
+                if (!(factory instanceof LoxCallable) || ((LoxCallable)factory).arity() != 0) {
+                    throw new RuntimeError(null, "Expected a class or function without parameters.");
+                }
+                Object instance = ((LoxCallable)factory).call(interpreter, List.of());
+                // natives like Array are LoxInstances too, but have no methods to send to
+                if (instance == null || instance.getClass() != LoxInstance.class) {
+                    throw new RuntimeError(null, "Actor factory must return an instance of a class.");
+                }
+                return runtime.actors.spawn((LoxInstance)instance);
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("actorStats", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return runtime.actors.stats();
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("AtomicNumber", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new LoxAtomicNumber(LoxNumbers.toDouble(arguments.get(0)));
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("Counter", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new LoxCounter();
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("ConcurrentMap", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new LoxConcurrentMap();
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("ConcurrentQueue", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new LoxConcurrentQueue();
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+    }
+
+    // A second execution context for another thread. It shares the globals
+    // and the resolution table but walks its own chain of environments.
+    Interpreter(Interpreter parent) {
+        this.runtime = parent.runtime;
+        this.locals = parent.locals;
+        this.globals = parent.globals;
+        this.environment = globals;
+        if (runtime.profiler != null) this.frames = new CallStack();
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    Interpreter fork() {
+        return new Interpreter(this);
     }
 
     void interpret(List<Stmt> statements) {
@@ -53,7 +236,15 @@ class Interpreter implements Expr.Visitor<Object>,
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            runtime.runtimeError(error);
+        }
+    }
+
+    void interpret(Stmt statement) {
+        try {
+            execute(statement);
+        } catch (RuntimeError error) {
+            runtime.runtimeError(error);
         }
     }
 
@@ -62,7 +253,7 @@ class Interpreter implements Expr.Visitor<Object>,
             Object value = evaluate(expression);
             return stringify(value);
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            runtime.runtimeError(error);
             return null;
         }
     }
@@ -93,7 +284,7 @@ class Interpreter implements Expr.Visitor<Object>,
         if (!(object instanceof LoxInstance)) {
             throw new RuntimeError(expr.name, "Only instances have fields.");
         }
-        Object value = evaluate(expr.value);
+        Object value = StringView.compact(evaluate(expr.value));
         ((LoxInstance)object).set(expr.name, value);
         return value;
     }
@@ -126,14 +317,23 @@ class Interpreter implements Expr.Visitor<Object>,
         return evaluate(expr.expression);
     }
 
-    private Object evaluate(Expr expr) {
+    // evaluate, execute and call are overridden by CountingInterpreter
+    Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
-    private void execute(Stmt stmt) {
+    void execute(Stmt stmt) {
         stmt.accept(this);
     }
 
+    Object call(LoxCallable function, List<Object> arguments) {
+        // natives only ever see flat strings
+        if (!(function instanceof LoxFunction) && !(function instanceof LoxClass)) {
+            LoxStrings.flatten(arguments);
+        }
+        return function.call(this, arguments);
+    }
+
     void executeBlock(List<Stmt> statements, Environment environment) {
         Environment previous = this.environment;
         try {
@@ -141,6 +341,7 @@ class Interpreter implements Expr.Visitor<Object>,
 
             for (Stmt statement : statements) {
                 execute(statement);
+                if (completion != Completion.NORMAL) break;
             }
         } finally {
             // Restore previous environment
@@ -148,6 +349,31 @@ class Interpreter implements Expr.Visitor<Object>,
         }
     }
 
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        completion = Completion.BREAK;
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        completion = Completion.CONTINUE;
+        return null;
+    }
+
+    // one table lookup, whatever the number of cases
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        int target = stmt.table.lookup(evaluate(stmt.value));
+        Stmt body = target < 0 ? stmt.otherwise : stmt.bodies.get(target);
+        if (body != null) {
+            execute(body);
+            // break ends the switch; continue belongs to the enclosing loop
+            if (completion == Completion.BREAK) completion = Completion.NORMAL;
+        }
+        return null;
+    }
+
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
         executeBlock(stmt.statements, new Environment(environment));
@@ -175,7 +401,7 @@ class Interpreter implements Expr.Visitor<Object>,
         String fnName = stmt.name.lexeme;
         
         for (Stmt.Function method : stmt.classMethods) {
-            LoxFunction function = new LoxFunction(fnName, method.function, environment, false);
+            LoxFunction function = new LoxFunction(fnName + "." + method.name.lexeme, method.function, environment, false);
             classMethods.put(method.name.lexeme, function);
         }
 
@@ -184,7 +410,7 @@ class Interpreter implements Expr.Visitor<Object>,
 
         Map<String, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method: stmt.methods) {
-            LoxFunction function = new LoxFunction(fnName, method.function, environment, method.name.lexeme.equals("init"));
+            LoxFunction function = new LoxFunction(fnName + "." + method.name.lexeme, method.function, environment, method.name.lexeme.equals("init"));
             methods.put(method.name.lexeme, function);
         }
 
@@ -224,7 +450,7 @@ class Interpreter implements Expr.Visitor<Object>,
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        runtime.output().println(value);
         return null;
     }
 
@@ -242,6 +468,8 @@ class Interpreter implements Expr.Visitor<Object>,
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
+        // globals live for the rest of the run
+        if (environment == globals) value = StringView.compact(value);
 
         environment.define(stmt.name.lexeme, value);
         return null;
@@ -251,6 +479,12 @@ class Interpreter implements Expr.Visitor<Object>,
     public Void visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
             execute(stmt.body);
+            if (completion != Completion.NORMAL) {
+                Completion exit = completion;
+                completion = Completion.NORMAL;
+                if (exit == Completion.BREAK) break;
+            }
+            if (stmt.increment != null) evaluate(stmt.increment);
         }
         return null;
     }
@@ -263,6 +497,7 @@ class Interpreter implements Expr.Visitor<Object>,
         if (distance != null) {
             environment.assignAt(distance, expr.name, value);
         }  else {
+            value = StringView.compact(value);
             globals.assign(expr.name, value);
         }
 
@@ -279,7 +514,7 @@ class Interpreter implements Expr.Visitor<Object>,
                 return !isTruthy(right);
             case MINUS:
                 checkNumberOperand(expr.operator, right);
-                return -(double)right;
+                return LoxNumbers.negate(right);
         }
         return null;
     }
@@ -305,21 +540,21 @@ class Interpreter implements Expr.Visitor<Object>,
     }
 
     private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) return;
+        if (LoxNumbers.isNumber(operand)) return;
         // Make a unique error function just for Lox
         throw new RuntimeError(operator, "Operand must be a numebr.");
     }
 
     private void checkNumberOperand(Token operator,
                                     Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
+        if (LoxNumbers.isNumber(left) && LoxNumbers.isNumber(right)) return;
 
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
     private void checkOperands(Object left, Object right, Token operator) {
-        if (left instanceof Double && right instanceof Double) return;
-        if (left instanceof String && right instanceof String) return;
+        if (LoxNumbers.isNumber(left) && LoxNumbers.isNumber(right)) return;
+        if (left instanceof CharSequence && right instanceof CharSequence) return;
         throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
     }
 
@@ -344,15 +579,24 @@ class Interpreter implements Expr.Visitor<Object>,
             case LESS:
             case LESS_EQUAL:
                 checkOperands(left, right, expr.operator);
-            if (left instanceof Double && right instanceof Double) {
+            if (left instanceof Long && right instanceof Long) {
                 switch (expr.operator.type) {
-                    case GREATER: return (double)left > (double)right;
-                    case GREATER_EQUAL: return (double)left >= (double)right;
-                    case LESS: return (double)left < (double)right;
-                    case LESS_EQUAL: return (double)left <= (double)right;
+                    case GREATER: return (long)left > (long)right;
+                    case GREATER_EQUAL: return (long)left >= (long)right;
+                    case LESS: return (long)left < (long)right;
+                    case LESS_EQUAL: return (long)left <= (long)right;
+                }
+            } else if (!(left instanceof CharSequence)) {
+                double a = LoxNumbers.toDouble(left);
+                double b = LoxNumbers.toDouble(right);
+                switch (expr.operator.type) {
+                    case GREATER: return a > b;
+                    case GREATER_EQUAL: return a >= b;
+                    case LESS: return a < b;
+                    case LESS_EQUAL: return a <= b;
                 }
             } else {
-                int comparison = ((String)left).compareTo((String)right);
+                int comparison = LoxStrings.compare((CharSequence)left, (CharSequence)right);
                 switch (expr.operator.type) {
                     case GREATER: return comparison > 0;
                     case GREATER_EQUAL: return comparison >= 0;
@@ -364,22 +608,22 @@ class Interpreter implements Expr.Visitor<Object>,
 
             case MINUS:
                 checkNumberOperand(expr.operator, left, right);    
-                return (double)left - (double)right;
+                return LoxNumbers.subtract(left, right);
             case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double)left + (double)right;
+                if (LoxNumbers.isNumber(left) && LoxNumbers.isNumber(right)) {
+                    return LoxNumbers.add(left, right);
                 }
-                if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
+                if (left instanceof CharSequence && right instanceof CharSequence) {
+                    return Rope.concat((CharSequence)left, (CharSequence)right);
                 }
                 throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
             case SLASH:
                 checkNumberOperand(expr.operator, left, right);
-                if ((double)right == 0) throw new RuntimeError(expr.operator, "Cannot devide by zero.");
-                return (double)left / (double)right;
+                if (LoxNumbers.isZero(right)) throw new RuntimeError(expr.operator, "Cannot devide by zero.");
+                return LoxNumbers.divide(left, right);
             case STAR:
                 checkNumberOperand(expr.operator, left, right);
-                return (double)left * (double)right;    
+                return LoxNumbers.multiply(left, right);
         }
         return null;
     }
@@ -402,7 +646,15 @@ class Interpreter implements Expr.Visitor<Object>,
             throw new RuntimeError(expr.paren, "Expected " + 
                     function.arity() + " arguments but got " + arguments.size() + ".");
         }
-        return function.call(this, arguments);
+        if (frames != null) frames.setLine(expr.paren.line);
+        try {
+            return call(function, arguments);
+        } catch (RuntimeError error) {
+            // natives don't know where they were called from
+            if (error.token == null) throw new RuntimeError(expr.paren, error.getMessage());
+            error.callSite(expr.paren.line);
+            throw error;
+        }
     }
 
     @Override
@@ -417,6 +669,9 @@ class Interpreter implements Expr.Visitor<Object>,
 
             return result;
         }
+        if (object instanceof CharSequence) {
+            return LoxStrings.get((CharSequence)object, expr.name);
+        }
 
         throw new RuntimeError(expr.name, "Only instances have properties.");
     }
@@ -427,22 +682,65 @@ class Interpreter implements Expr.Visitor<Object>,
         return isTruthy(condition) ? evaluate(expr.thenBranch) : evaluate(expr.elseBranch);
     }
 
+    // The fused nodes of Superinstructions. Each falls back to the visit
+    // method of the node it extends when the fast path doesn't apply; that
+    // re-reads the variable, which has no side effects.
+
+    Object incrementLocal(Superinstructions.IncrementLocal expr) {
+        Integer distance = locals.get(expr);
+        if (distance != null) {
+            Environment scope = environment.ancestor(distance);
+            Object value = scope.getAt(0, expr.name.lexeme);
+            if (LoxNumbers.isNumber(value)) {
+                value = LoxNumbers.add(value, expr.delta);
+                scope.assignAt(0, expr.name, value);
+                return value;
+            }
+        }
+        return visitAssignExpr(expr);
+    }
+
+    Object lessLocalConst(Superinstructions.LessLocalConst expr) {
+        Object value = lookUpVariable(expr.variable.name, expr.variable);
+        if (value instanceof Long && expr.constant instanceof Long) {
+            return (long)value < (long)expr.constant;
+        }
+        return visitBinaryExpr(expr);
+    }
+
+    Object getSelfField(Superinstructions.GetSelfField expr) {
+        Object self = lookUpVariable(expr.self.keyword, expr.self);
+        // nil fields, methods and getters take the long way
+        if (self != null && self.getClass() == LoxInstance.class) {
+            Object value = ((LoxInstance)self).field(expr.name.lexeme);
+            if (value != null && !(value instanceof LoxFunction)) return value;
+        }
+        return visitGetExpr(expr);
+    }
+
+    Void printLocal(Superinstructions.PrintLocal stmt) {
+        runtime.output().println(lookUpVariable(stmt.variable.name, stmt.variable));
+        return null;
+    }
+
     private boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
+        if (a instanceof CharSequence && b instanceof CharSequence) {
+            return LoxStrings.equals((CharSequence)a, (CharSequence)b);
+        }
 
         return a.equals(b);
     }
 
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         if (object == null) return "nil";
 
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
+        // integral numbers are Longs, so there is no ".0" to strip, except
+        // on -0.0; large ones print in E notation as their doubles would
+        if (object instanceof Double && LoxNumbers.isNegativeZero((double)object)) return "-0";
+        if (object instanceof Long && LoxNumbers.printsAsDouble((long)object)) {
+            return Double.toString((long)object);
         }
         return object.toString();
     }
@@ -0,0 +1,90 @@
+package java_lox.lox;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Set;
+
+// Body of a function that the parser only brace-matched. It keeps the body's
+// tokens and is parsed and resolved the first time anything looks inside it,
+// normally the function's first call. Dead functions never pay for either.
+class LazyBody extends AbstractList<Stmt> {
+    private final TokenBuffer tokens;
+    private final LoxRuntime runtime;
+    // identifiers used in the body, so the enclosing scopes can count them as read
+    final Set<String> names;
+
+    private List<Stmt> statements;
+    private boolean parseFailed = false;
+    private Resolver resolver; // scope snapshot taken where the function was declared
+    private volatile List<Stmt> ready;
+    // set instead of ready when the body has errors
+    private boolean failed = false;
+
+    LazyBody(TokenBuffer tokens, Set<String> names, LoxRuntime runtime) {
+        this.tokens = tokens;
+        this.names = names;
+        this.runtime = runtime;
+        runtime.unparsedBodies.incrementAndGet();
+    }
+
+    // called by the Resolver in place of resolving the body
+    void defer(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    boolean isReady() {
+        return ready != null;
+    }
+
+    void parse() {
+        if (statements != null) return;
+
+        Parser parser = new Parser(tokens, runtime);
+        parser.preParseFunctions(false);
+        statements = parser.parseFunctionBody();
+        parseFailed = parser.hadError();
+    }
+
+    private List<Stmt> force() {
+        List<Stmt> body = ready;
+        if (body != null) return body;
+
+        synchronized (this) {
+            if (ready != null) return ready;
+            // Errors are reported once; later calls just fail again. Each call
+            // gets its own error, since the trace is filled in while unwinding.
+            if (failed) throw failure();
+            if (resolver == null) {
+                throw new IllegalStateException("Function body used before it was resolved.");
+            }
+
+            parse();
+            failed = parseFailed;
+            if (!failed) {
+                resolver.resolveDeferred(statements);
+                failed = resolver.hadError();
+            }
+            resolver = null;
+            runtime.unparsedBodies.decrementAndGet();
+
+            // the errors themselves have been reported like any other syntax error
+            if (failed) throw failure();
+            ready = statements;
+            return statements;
+        }
+    }
+
+    private RuntimeError failure() {
+        return new RuntimeError(tokens.token(0), "Function body has errors.");
+    }
+
+    @Override
+    public Stmt get(int index) {
+        return force().get(index);
+    }
+
+    @Override
+    public int size() {
+        return force().size();
+    }
+}
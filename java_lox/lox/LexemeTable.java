@@ -0,0 +1,79 @@
+package java_lox.lox;
+
+import java.util.Arrays;
+
+// Interns lexemes straight from the scanner's char buffer so that every
+// occurrence of an identifier or literal shares one String (and one boxed
+// literal). Each distinct lexeme gets a small id that TokenBuffer stores
+// instead of a reference.
+class LexemeTable {
+    static final class Entry {
+        final String lexeme;
+        final int hash;
+        final int id;
+        Object literal;
+
+        Entry(String lexeme, int hash, int id) {
+            this.lexeme = lexeme;
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+
+    private Entry[] entries = new Entry[256];
+    private Entry[] byId = new Entry[128];
+    private int size = 0;
+
+    Entry intern(char[] chars, int offset, int count) {
+        int hash = 0;
+        for (int i = offset; i < offset + count; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        int mask = entries.length - 1;
+        int index = mix(hash) & mask;
+        while (true) {
+            Entry entry = entries[index];
+            if (entry == null) break;
+            if (entry.hash == hash && sameChars(entry.lexeme, chars, offset, count)) {
+                return entry;
+            }
+            index = (index + 1) & mask;
+        }
+
+        Entry entry = new Entry(new String(chars, offset, count), hash, size);
+        entries[index] = entry;
+        if (size == byId.length) byId = Arrays.copyOf(byId, size * 2);
+        byId[size] = entry;
+        if (++size * 2 > entries.length) grow();
+        return entry;
+    }
+
+    Entry get(int id) {
+        return byId[id];
+    }
+
+    private static boolean sameChars(String lexeme, char[] chars, int offset, int count) {
+        if (lexeme.length() != count) return false;
+        for (int i = 0; i < count; i++) {
+            if (lexeme.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        Entry[] old = entries;
+        entries = new Entry[old.length * 2];
+        int mask = entries.length - 1;
+        for (Entry entry : old) {
+            if (entry == null) continue;
+            int index = mix(entry.hash) & mask;
+            while (entries[index] != null) index = (index + 1) & mask;
+            entries[index] = entry;
+        }
+    }
+}
@@ -3,103 +3,79 @@ package java_lox.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usege: jlox [script]");
+        LoxRuntime runtime = new LoxRuntime();
+        // --lazy: only brace-match function bodies until their first call
+        // --validate: with --lazy, still report syntax errors in bodies up front
+        // --profile=<file>: sample Lox stacks into <file> (collapsed stacks)
+        // --profile-hz=<n>: samples per second, 100 by default
+        // --hotspots=<file>: count node executions and time functions, report to <file>
+        // --line-buffered: write print output line by line instead of in large blocks
+        // --no-cache: don't read or write the .loxc file next to the script
+        boolean lazyFunctions = false;
+        boolean validateFunctions = false;
+        String profile = null;
+        int profileHz = 100;
+        String hotspots = null;
+
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--lazy")) {
+                lazyFunctions = true;
+            } else if (arg.equals("--validate")) {
+                validateFunctions = true;
+            } else if (arg.startsWith("--profile=")) {
+                profile = arg.substring("--profile=".length());
+            } else if (arg.equals("--line-buffered")) {
+                runtime.setLineBuffered(true);
+            } else if (arg.equals("--no-cache")) {
+                runtime.disableCache();
+            } else if (arg.startsWith("--hotspots=")) {
+                hotspots = arg.substring("--hotspots=".length());
+            } else if (arg.startsWith("--profile-hz=")) {
+                profileHz = Integer.parseInt(arg.substring("--profile-hz=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+        if (lazyFunctions) runtime.preParseFunctions(validateFunctions);
+        if (hotspots != null) runtime.countExecutions(Paths.get(hotspots));
+        if (profile != null) runtime.profile(Paths.get(profile), profileHz);
+
+        if (files.size() > 1) {
+            System.out.println("Usege: jlox [--lazy [--validate]] [--profile=<file> [--profile-hz=<n>]] [--hotspots=<file>] [--line-buffered] [--no-cache] [script]");
             System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        } else if (files.size() == 1) {
+            runFile(runtime, files.get(0));
         } else {
-            rumPrompt();
+            rumPrompt(runtime);
         }
     }
 
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-    
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+    private static void runFile(LoxRuntime runtime, String path) throws IOException {
+        runtime.runFile(Paths.get(path));
+        runtime.finish();
+
+        if (runtime.hadError()) System.exit(65);
+        if (runtime.hadRuntimeError()) System.exit(70);
     }
 
-    private static void rumPrompt() throws IOException {
+    private static void rumPrompt(LoxRuntime runtime) throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
-    
+
         // the code to let Lox recieves code from the users.
         for (;;) {
-            hadError = false;
-
             System.out.print("> ");
-            Scanner scanner = new Scanner(reader.readLine());
-            List<Token> tokens = scanner.scanTokens();
-
-            Parser parser = new Parser(tokens);
-            Object syntax = parser.parseRepl();
-
-            if (hadError) continue;
-
-            if (syntax instanceof List) {
-                interpreter.interpret((List<Stmt>)syntax);
-            } else if (syntax instanceof Expr) {
-                String result = interpreter.interpret((Expr)syntax);
-                if (result != null) {
-                    System.out.println(result);
-                }
-            }
+            String line = reader.readLine();
+            if (line == null) break;
+            runtime.runLine(line);
         }
+        runtime.finish();
     }
-
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-        
-        // Stop if there was a syntax error
-        if (hadError) return;
-
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-
-        // Stop if there was a resolution error
-        if (hadError) return;
-
-        interpreter.interpret(statements);
-    }
-    
-    static void error(int line, String message) {
-        report(line, " ", message);
-    }
-    
-    // need to be improve in order to enhance UX.
-    private static void report(int line, String where, String message) {
-        System.err.println(
-            "[line" + line + "] Error" + where + ": " + message
-        );
-        hadError = true;
-    }    
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
-        }
-    }
-
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + 
-        "\n[line" + error.token.line + "]");
-        hadRuntimeError = true;
-    }
-}
\ No newline at end of file
+}
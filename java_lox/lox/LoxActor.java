@@ -0,0 +1,109 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// Reference to an instance owned by an actor. Calling a method through the
+// reference only queues a message and returns nil; the actor runs its
+// messages one at a time on the ActorSystem's carrier threads, so the
+// instance's fields never need a lock. Fields can't be read or written
+// through the reference.
+class LoxActor extends LoxInstance {
+    private static final AtomicIntegerFieldUpdater<LoxActor> DEPTH =
+        AtomicIntegerFieldUpdater.newUpdater(LoxActor.class, "depth");
+    private static final AtomicIntegerFieldUpdater<LoxActor> SCHEDULED =
+        AtomicIntegerFieldUpdater.newUpdater(LoxActor.class, "scheduled");
+
+    static class Message {
+        final LoxFunction method;
+        final List<Object> arguments;
+
+        Message(LoxFunction method, List<Object> arguments) {
+            this.method = method;
+            this.arguments = arguments;
+        }
+    }
+
+    private final LoxInstance instance;
+    private final ActorSystem system;
+    private final ConcurrentLinkedQueue<Message> mailbox = new ConcurrentLinkedQueue<>();
+    private volatile int depth = 0;
+    private volatile int scheduled = 0; // 1 while queued on or running on a carrier
+
+    LoxActor(LoxInstance instance, ActorSystem system) {
+        super(null);
+        this.instance = instance;
+        this.system = system;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    // returns the new mailbox depth
+    int post(Message message) {
+        mailbox.add(message);
+        return DEPTH.incrementAndGet(this);
+    }
+
+    Message poll() {
+        Message message = mailbox.poll();
+        if (message != null) DEPTH.decrementAndGet(this);
+        return message;
+    }
+
+    // true if the caller won the right to put this actor on a carrier
+    boolean claim() {
+        return SCHEDULED.compareAndSet(this, 0, 1);
+    }
+
+    // Gives up the carrier. True if messages arrived meanwhile and the caller
+    // has to schedule the actor again.
+    boolean release() {
+        scheduled = 0;
+        return !mailbox.isEmpty() && claim();
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("mailbox")) return (long)depth;
+
+        LoxFunction method = instance.findMethod(name.lexeme);
+        if (method == null) {
+            throw new RuntimeError(name, "Actors only accept messages; '" +
+                                   name.lexeme + "' is not a method.");
+        }
+        if (method.isGetter()) {
+            throw new RuntimeError(name, "Actors only accept messages; '" +
+                                   name.lexeme + "' is a getter.");
+        }
+
+        LoxFunction bound = method.bind(instance);
+        return new LoxCallable() {
+            @Override
+            public int arity() {
+                return bound.arity();
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                system.send(LoxActor.this, new Message(bound, arguments));
+                return null;
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        };
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't set fields of an actor.");
+    }
+
+    @Override
+    public String toString() {
+        return "<actor " + instance + ">";
+    }
+}
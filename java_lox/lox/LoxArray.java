@@ -1,6 +1,11 @@
 package java_lox.lox;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
 
 class LoxArray extends LoxInstance{
     private final Object[] elements;
@@ -10,6 +15,11 @@ class LoxArray extends LoxInstance{
         elements = new Object[size];
     }
 
+    LoxArray(Object[] elements) {
+        super(null);
+        this.elements = elements;
+    }
+
     @Override
     Object get(Token name) {
         if (name.lexeme.equals("get")) {
@@ -21,7 +31,7 @@ class LoxArray extends LoxInstance{
 
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
-                    int index = (int)(double)arguments.get(0);
+                    int index = LoxNumbers.index(arguments.get(0), elements.length - 1);
                     return elements[index];
                 }
             };
@@ -34,18 +44,159 @@ class LoxArray extends LoxInstance{
 
                 @Override
                 public Object call(Interpreter interpreter, List<Object> arguments) {
-                    int index = (int)(double)arguments.get(0);
+                    int index = LoxNumbers.index(arguments.get(0), elements.length - 1);
                     Object value = arguments.get(1);
                     return elements[index] = value;
                 }
             };
         } else if(name.lexeme.equals("length")) {
-            return (double) elements.length;
+            return (long) elements.length;
+        } else if (name.lexeme.equals("parallelMap")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    LoxCallable function = callback(arguments.get(0), 1);
+                    ThreadLocal<Interpreter> workers = ThreadLocal.withInitial(interpreter::fork);
+                    Object[] result = new Object[elements.length];
+                    IntStream.range(0, elements.length).parallel().forEach(i ->
+                        result[i] = workers.get().call(function, Arrays.asList(elements[i])));
+                    return new LoxArray(result);
+                }
+            };
+        } else if (name.lexeme.equals("parallelForEach")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    LoxCallable function = callback(arguments.get(0), 1);
+                    ThreadLocal<Interpreter> workers = ThreadLocal.withInitial(interpreter::fork);
+                    IntStream.range(0, elements.length).parallel().forEach(i ->
+                        workers.get().call(function, Arrays.asList(elements[i])));
+                    return null;
+                }
+            };
+        } else if (name.lexeme.equals("parallelReduce")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    LoxCallable function = callback(arguments.get(0), 2);
+                    if (elements.length == 0) return null;
+                    Reduce reduce = new Reduce(function, ThreadLocal.withInitial(interpreter::fork),
+                                               0, elements.length, leafSize());
+                    return ForkJoinPool.commonPool().invoke(reduce);
+                }
+            };
+        } else if (name.lexeme.equals("sort")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    Comparator<Object> order;
+                    if (arguments.get(0) == null) {
+                        order = LoxArray::compareNatural;
+                    } else {
+                        LoxCallable function = callback(arguments.get(0), 2);
+                        ThreadLocal<Interpreter> workers = ThreadLocal.withInitial(interpreter::fork);
+                        order = (a, b) -> {
+                            Object result = workers.get().call(function, Arrays.asList(a, b));
+                            if (!LoxNumbers.isNumber(result)) {
+                                throw new RuntimeError(null, "Comparison function must return a number.");
+                            }
+                            return LoxNumbers.compare(result, 0L);
+                        };
+                    }
+
+                    try {
+                        Arrays.parallelSort(elements, order);
+                    } catch (IllegalArgumentException e) {
+                        throw new RuntimeError(null, "Comparison function is inconsistent.");
+                    }
+                    return LoxArray.this;
+                }
+            };
         }
 
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    // Callbacks are invoked through Interpreter.call on a worker, like any
+    // other call, so natives get flat strings and --hotspots times them.
+    private static LoxCallable callback(Object function, int arity) {
+        if (!(function instanceof LoxCallable) || ((LoxCallable)function).arity() != arity) {
+            throw new RuntimeError(null, "Expected a function of " + arity + " parameters.");
+        }
+        return (LoxCallable)function;
+    }
+
+    // sort(nil): numbers and strings in their natural order
+    private static int compareNatural(Object a, Object b) {
+        if (LoxNumbers.isNumber(a) && LoxNumbers.isNumber(b)) return LoxNumbers.compare(a, b);
+        if (a instanceof CharSequence && b instanceof CharSequence) {
+            return LoxStrings.compare((CharSequence)a, (CharSequence)b);
+        }
+        throw new RuntimeError(null, "Can only sort numbers or strings without a comparison function.");
+    }
+
+    // a few leaves per worker so that uneven callbacks still balance out
+    private int leafSize() {
+        return Math.max(1, elements.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+    }
+
+    // Folds [from, to) left to right; halves are combined with the same
+    // function, so it has to be associative.
+    private class Reduce extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final LoxCallable function;
+        private final ThreadLocal<Interpreter> workers;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        Reduce(LoxCallable function, ThreadLocal<Interpreter> workers, int from, int to, int leafSize) {
+            this.function = function;
+            this.workers = workers;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Object compute() {
+            if (to - from <= leafSize) {
+                Object accumulator = elements[from];
+                for (int i = from + 1; i < to; i++) {
+                    accumulator = workers.get().call(function, Arrays.asList(accumulator, elements[i]));
+                }
+                return accumulator;
+            }
+
+            int middle = (from + to) >>> 1;
+            Reduce left = new Reduce(function, workers, from, middle, leafSize);
+            left.fork();
+            Object right = new Reduce(function, workers, middle, to, leafSize).compute();
+            return workers.get().call(function, Arrays.asList(left.join(), right));
+        }
+    }
+
     @Override
     void set(Token name, Object value) {
         throw new RuntimeError(name, "Can't add properties to arrays");
@@ -57,7 +208,9 @@ class LoxArray extends LoxInstance{
         buffer.append("[");
         for (int i = 0; i < elements.length; i++) {
             if (i != 0) buffer.append(", ");
-            buffer.append(elements[i]);
+            // elements print as Java doubles did, 1.0 rather than 1
+            if (elements[i] instanceof Long) buffer.append((double)(long)elements[i]);
+            else buffer.append(elements[i]);
         }
         buffer.append("]");
         return buffer.toString();
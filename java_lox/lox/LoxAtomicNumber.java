@@ -0,0 +1,104 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A number that Lox tasks can update without locks: the double's bits live in
+// an AtomicLong and every update is a compare-and-set.
+class LoxAtomicNumber extends LoxInstance {
+    private final AtomicLong bits;
+
+    LoxAtomicNumber(double value) {
+        super(null);
+        bits = new AtomicLong(Double.doubleToRawLongBits(value));
+    }
+
+    private double value() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    private double add(double delta) {
+        for (;;) {
+            long current = bits.get();
+            double next = Double.longBitsToDouble(current) + delta;
+            if (bits.compareAndSet(current, Double.doubleToRawLongBits(next))) return next;
+        }
+    }
+
+    private boolean compareAndSet(double expected, double update) {
+        for (;;) {
+            long current = bits.get();
+            // compare numerically, as == does, rather than bit for bit
+            if (Double.longBitsToDouble(current) != expected) return false;
+            if (bits.compareAndSet(current, Double.doubleToRawLongBits(update))) return true;
+        }
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("get")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return LoxNumbers.of(value());
+                }
+            };
+        } else if (name.lexeme.equals("set")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    double value = LoxNumbers.toDouble(arguments.get(0));
+                    bits.set(Double.doubleToRawLongBits(value));
+                    return arguments.get(0);
+                }
+            };
+        } else if (name.lexeme.equals("add")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                // returns the new value
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return LoxNumbers.of(add(LoxNumbers.toDouble(arguments.get(0))));
+                }
+            };
+        } else if (name.lexeme.equals("compareAndSet")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 2;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return compareAndSet(LoxNumbers.toDouble(arguments.get(0)), LoxNumbers.toDouble(arguments.get(1)));
+                }
+            };
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to atomics.");
+    }
+
+    @Override
+    public String toString() {
+        return Interpreter.stringify(LoxNumbers.of(value()));
+    }
+}
@@ -0,0 +1,161 @@
+package java_lox.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Raw bytes over a heap, direct or memory-mapped ByteBuffer. Typed access
+// works like JavaScript's DataView:
+//   getInt8(offset), getUint8(offset), setInt8(offset, value), setUint8(offset, value)
+//   get<Type>(offset, littleEndian), set<Type>(offset, value, littleEndian)
+// for Int16, Uint16, Int32, Uint32, Int64, Float32 and Float64. slice(start, end)
+// shares the memory, text() decodes UTF-8 and length is the size in bytes.
+class LoxBytes extends LoxInstance {
+    private final ByteBuffer big;
+    private final ByteBuffer little;
+
+    LoxBytes(ByteBuffer buffer) {
+        super(null);
+        this.big = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        this.little = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // the whole range, for the file natives to write directly
+    ByteBuffer buffer() {
+        return big.duplicate().clear();
+    }
+
+    private static int width(String type) {
+        switch (type) {
+            case "Int8": case "Uint8":                   return 1;
+            case "Int16": case "Uint16":                 return 2;
+            case "Int32": case "Uint32": case "Float32": return 4;
+            case "Int64": case "Float64":                return 8;
+            default:                                     return 0;
+        }
+    }
+
+    private Object read(String type, int offset, ByteBuffer buffer) {
+        switch (type) {
+            case "Int8":    return (long)buffer.get(offset);
+            case "Uint8":   return (long)(buffer.get(offset) & 0xff);
+            case "Int16":   return (long)buffer.getShort(offset);
+            case "Uint16":  return (long)(buffer.getShort(offset) & 0xffff);
+            case "Int32":   return (long)buffer.getInt(offset);
+            case "Uint32":  return buffer.getInt(offset) & 0xffffffffL;
+            case "Int64":   return buffer.getLong(offset);
+            case "Float32": return LoxNumbers.of(buffer.getFloat(offset));
+            default:        return LoxNumbers.of(buffer.getDouble(offset));
+        }
+    }
+
+    private void write(String type, int offset, Object value, ByteBuffer buffer) {
+        switch (type) {
+            case "Int8": case "Uint8":   buffer.put(offset, (byte)LoxNumbers.toLong(value)); break;
+            case "Int16": case "Uint16": buffer.putShort(offset, (short)LoxNumbers.toLong(value)); break;
+            case "Int32": case "Uint32": buffer.putInt(offset, (int)LoxNumbers.toLong(value)); break;
+            case "Int64":                buffer.putLong(offset, LoxNumbers.toLong(value)); break;
+            case "Float32":              buffer.putFloat(offset, (float)LoxNumbers.toDouble(value)); break;
+            default:                     buffer.putDouble(offset, LoxNumbers.toDouble(value)); break;
+        }
+    }
+
+    // checked like an array index, so that [offset, offset + width) fits
+    private int offset(Object value, int width) {
+        return LoxNumbers.index(value, (long)big.limit() - width);
+    }
+
+    private ByteBuffer order(List<Object> arguments, int index) {
+        if (arguments.size() > index && isTruthy(arguments.get(index))) return little;
+        return big;
+    }
+
+    private static boolean isTruthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean) return (boolean)value;
+        return true;
+    }
+
+    @Override
+    Object get(Token name) {
+        String lexeme = name.lexeme;
+        if (lexeme.startsWith("get") && width(lexeme.substring(3)) > 0) {
+            String type = lexeme.substring(3);
+            int width = width(type);
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return width == 1 ? 1 : 2;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return read(type, offset(arguments.get(0), width), order(arguments, 1));
+                }
+            };
+        } else if (lexeme.startsWith("set") && width(lexeme.substring(3)) > 0) {
+            String type = lexeme.substring(3);
+            int width = width(type);
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return width == 1 ? 2 : 3;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    int offset = offset(arguments.get(0), width);
+                    try {
+                        write(type, offset, arguments.get(1), order(arguments, 2));
+                    } catch (ReadOnlyBufferException e) {
+                        throw new RuntimeError(null, "These bytes are read-only.");
+                    }
+                    return arguments.get(1);
+                }
+            };
+        } else if (lexeme.equals("slice")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 2;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    int start = offset(arguments.get(0), 0);
+                    int end = offset(arguments.get(1), 0);
+                    if (end < start) throw new RuntimeError(null, "Slice end is before its start.");
+                    return new LoxBytes(big.slice(start, end - start));
+                }
+            };
+        } else if (lexeme.equals("text")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return StandardCharsets.UTF_8.decode(buffer()).toString();
+                }
+            };
+        } else if (lexeme.equals("length")) {
+            return (long)big.limit();
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to bytes.");
+    }
+
+    @Override
+    public String toString() {
+        return "<bytes " + big.limit() + ">";
+    }
+}
@@ -0,0 +1,115 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SynchronousQueue;
+
+// Bounded queue between Lox tasks. send() blocks while the channel is full,
+// receive() while it is empty. A capacity of 0 makes every send wait for a
+// matching receive.
+class LoxChannel extends LoxInstance {
+    // the queues can't hold null, which is how nil is represented
+    private static final Object NIL = new Object();
+
+    private final BlockingQueue<Object> queue;
+
+    LoxChannel(int capacity) {
+        super(null);
+        queue = capacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("send")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    Object value = arguments.get(0);
+                    try {
+                        put(value == null ? NIL : value);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeError(null, "Interrupted while sending.");
+                    }
+                    return value;
+                }
+            };
+        } else if (name.lexeme.equals("receive")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    try {
+                        Object value = take();
+                        return value == NIL ? null : value;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeError(null, "Interrupted while receiving.");
+                    }
+                }
+            };
+        } else if (name.lexeme.equals("size")) {
+            return (long)queue.size();
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to channels.");
+    }
+
+    // Blocking goes through managedBlock so that a task or actor pool can
+    // add a thread while this one waits; elsewhere it is a plain put/take.
+    private void put(Object value) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean done = false;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                if (!done) queue.put(value);
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done || (done = queue.offer(value));
+            }
+        });
+    }
+
+    private Object take() throws InterruptedException {
+        Object[] value = new Object[1];
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                if (value[0] == null) value[0] = queue.take();
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return value[0] != null || (value[0] = queue.poll()) != null;
+            }
+        });
+        return value[0];
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
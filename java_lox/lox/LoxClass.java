@@ -35,6 +35,12 @@ class LoxClass extends LoxInstance implements LoxCallable{
     @Override
     public Object call(Interpreter interpreter,
                         List<Object> arguments) {
+        LoxEvents.ClassInstantiation event = new LoxEvents.ClassInstantiation();
+        if (event.isEnabled()) {
+            event.className = name;
+            event.commit();
+        }
+
         LoxInstance instance = new LoxInstance(this);
         LoxFunction initializer = findMethod("init");
         if (initializer != null) {
@@ -0,0 +1,140 @@
+package java_lox.lox;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hash map that Lox tasks can share. Keys compare like == does. update() runs
+// its function atomically for that key, so read-modify-write needs no lock.
+class LoxConcurrentMap extends LoxInstance {
+    // ConcurrentHashMap can't hold null, which is how nil is represented
+    private static final Object NIL = new Object();
+
+    private final ConcurrentHashMap<Object, Object> map = new ConcurrentHashMap<>();
+
+    LoxConcurrentMap() {
+        super(null);
+    }
+
+    private static Object wrap(Object value) {
+        return value == null ? NIL : value;
+    }
+
+    private static Object unwrap(Object value) {
+        return value == NIL ? null : value;
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("get")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return unwrap(map.get(wrap(arguments.get(0))));
+                }
+            };
+        } else if (name.lexeme.equals("put")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 2;
+                }
+
+                // returns the previous value
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return unwrap(map.put(wrap(arguments.get(0)), wrap(arguments.get(1))));
+                }
+            };
+        } else if (name.lexeme.equals("putIfAbsent")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 2;
+                }
+
+                // returns the value already there, or nil if this put won
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return unwrap(map.putIfAbsent(wrap(arguments.get(0)), wrap(arguments.get(1))));
+                }
+            };
+        } else if (name.lexeme.equals("update")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 2;
+                }
+
+                // update(key, fun(old) { ... }); old is nil for a new key
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    Object function = arguments.get(1);
+                    if (!(function instanceof LoxCallable) || ((LoxCallable)function).arity() != 1) {
+                        throw new RuntimeError(null, "Expected a function of 1 parameters.");
+                    }
+                    return unwrap(map.compute(wrap(arguments.get(0)), (key, old) ->
+                        wrap(((LoxCallable)function).call(interpreter, Arrays.asList(unwrap(old))))));
+                }
+            };
+        } else if (name.lexeme.equals("remove")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return unwrap(map.remove(wrap(arguments.get(0))));
+                }
+            };
+        } else if (name.lexeme.equals("containsKey")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return map.containsKey(wrap(arguments.get(0)));
+                }
+            };
+        } else if (name.lexeme.equals("keys")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                // a snapshot; keys added meanwhile may or may not be in it
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    Object[] keys = map.keySet().toArray();
+                    for (int i = 0; i < keys.length; i++) keys[i] = unwrap(keys[i]);
+                    return new LoxArray(keys);
+                }
+            };
+        } else if (name.lexeme.equals("size")) {
+            return (long)map.size();
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to maps.");
+    }
+
+    @Override
+    public String toString() {
+        return "<map>";
+    }
+}
@@ -0,0 +1,63 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Unbounded lock-free FIFO. Unlike a Channel nothing ever blocks: poll() on
+// an empty queue returns nil.
+class LoxConcurrentQueue extends LoxInstance {
+    // the queue can't hold null, which is how nil is represented
+    private static final Object NIL = new Object();
+
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+
+    LoxConcurrentQueue() {
+        super(null);
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("push")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    Object value = arguments.get(0);
+                    queue.add(value == null ? NIL : value);
+                    return value;
+                }
+            };
+        } else if (name.lexeme.equals("poll")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    Object value = queue.poll();
+                    return value == NIL ? null : value;
+                }
+            };
+        } else if (name.lexeme.equals("isEmpty")) {
+            return queue.isEmpty();
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to queues.");
+    }
+
+    @Override
+    public String toString() {
+        return "<queue>";
+    }
+}
@@ -0,0 +1,47 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+
+// A sum that many tasks add to at once. Additions go to striped cells and
+// never contend; reading the total adds the cells up, so it is only exact
+// once the writers are done.
+class LoxCounter extends LoxInstance {
+    private final DoubleAdder sum = new DoubleAdder();
+
+    LoxCounter() {
+        super(null);
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("add")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    sum.add(LoxNumbers.toDouble(arguments.get(0)));
+                    return null;
+                }
+            };
+        } else if (name.lexeme.equals("sum")) {
+            return LoxNumbers.of(sum.sum());
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to counters.");
+    }
+
+    @Override
+    public String toString() {
+        return Interpreter.stringify(LoxNumbers.of(sum.sum()));
+    }
+}
@@ -0,0 +1,115 @@
+package java_lox.lox;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events for Lox activity, so it shows up on the same
+// timeline as GC and thread events. They are compiled to no-ops unless a
+// recording enables them, e.g.
+//   java -XX:StartFlightRecording:filename=lox.jfr,settings=profile ...
+// and thresholds can be changed in a .jfc file ("lox.FunctionCall#threshold").
+final class LoxEvents {
+    private LoxEvents() {}
+
+    @Name("lox.FunctionCall")
+    @Label("Lox Function Call")
+    @Category("Lox")
+    @Description("A Lox function that ran longer than the threshold")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class FunctionCall extends Event {
+        @Label("Function")
+        String function;
+    }
+
+    @Name("lox.ClassInstantiation")
+    @Label("Lox Class Instantiation")
+    @Category("Lox")
+    @Description("A Lox class was called to make an instance; group by class for counts")
+    @StackTrace(false)
+    static class ClassInstantiation extends Event {
+        @Label("Class")
+        String className;
+    }
+
+    @Name("lox.RuntimeError")
+    @Label("Lox Runtime Error")
+    @Category("Lox")
+    @StackTrace(false)
+    static class RuntimeError extends Event {
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+
+        @Label("Lox Trace")
+        String trace;
+    }
+
+    @Name("lox.Phase")
+    @Label("Lox Phase")
+    @Category("Lox")
+    @Description("Loading, compiling or running a script, with the GC work done meanwhile")
+    @StackTrace(false)
+    static class Phase extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("GC Count")
+        long gcCount;
+
+        @Label("GC Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long gcTime;
+
+        // GC totals when the phase began; transient keeps them out of the event
+        private transient long gcCountAtBegin;
+        private transient long gcTimeAtBegin;
+    }
+
+    static Phase beginPhase(String name) {
+        Phase event = new Phase();
+        if (event.isEnabled()) {
+            event.phase = name;
+            event.gcCountAtBegin = gcCount();
+            event.gcTimeAtBegin = gcTime();
+            event.begin();
+        }
+        return event;
+    }
+
+    static void endPhase(Phase event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.gcCount = gcCount() - event.gcCountAtBegin;
+            event.gcTime = gcTime() - event.gcTimeAtBegin;
+            event.commit();
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,170 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// File and byte natives:
+//   readLines(path)                 a LoxLineReader: next(), hasNext, seek(offset), position, close()
+//   readBytes(path, offset, length) a read-only LoxBytes mapped over that part of the file;
+//                                   length nil reads to the end
+//   writeFile(path, value)          replaces the file with the printed value, or with the bytes
+//   appendFile(path, value)         appends it, creating the file if needed
+//   Bytes(size), DirectBytes(size)  zeroed LoxBytes on the heap or off it
+final class LoxFiles {
+    private LoxFiles() {}
+
+    static void define(Environment globals) {
+        globals.define("readLines", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String path = path(arguments.get(0));
+                try {
+                    return new LoxLineReader(path);
+                } catch (IOException e) {
+                    throw error(path, e);
+                }
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("readBytes", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 3;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String path = path(arguments.get(0));
+                long offset = LoxNumbers.toLong(arguments.get(1));
+                try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    long length = arguments.get(2) == null
+                        ? size - offset : LoxNumbers.toLong(arguments.get(2));
+                    if (offset < 0 || length < 0 || offset + length > size || length > Integer.MAX_VALUE) {
+                        throw new RuntimeError(null, "Range is outside of '" + path + "'.");
+                    }
+                    // the mapping stays valid after the channel is closed
+                    return new LoxBytes(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                } catch (IOException e) {
+                    throw error(path, e);
+                }
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("Bytes", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new LoxBytes(ByteBuffer.allocate(size(arguments.get(0))));
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("DirectBytes", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new LoxBytes(ByteBuffer.allocateDirect(size(arguments.get(0))));
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("writeFile", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 2;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                write(path(arguments.get(0)), arguments.get(1),
+                      StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                return null;
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        globals.define("appendFile", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 2;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                write(path(arguments.get(0)), arguments.get(1),
+                      StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+                return null;
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+    }
+
+    private static void write(String path, Object value, OpenOption... options) {
+        if (value instanceof LoxBytes) {
+            ByteBuffer bytes = ((LoxBytes)value).buffer();
+            try (FileChannel channel = FileChannel.open(Path.of(path), options)) {
+                while (bytes.hasRemaining()) channel.write(bytes);
+            } catch (IOException e) {
+                throw error(path, e);
+            }
+            return;
+        }
+
+        try (Writer writer = Files.newBufferedWriter(Path.of(path), StandardCharsets.UTF_8, options)) {
+            writer.write(Interpreter.stringify(value));
+        } catch (IOException e) {
+            throw error(path, e);
+        }
+    }
+
+    private static int size(Object value) {
+        long size = LoxNumbers.toLong(value);
+        if (size < 0 || size > Integer.MAX_VALUE) throw new RuntimeError(null, "Invalid size.");
+        return (int)size;
+    }
+
+    private static String path(Object value) {
+        if (!(value instanceof String)) throw new RuntimeError(null, "Path must be a string.");
+        return (String)value;
+    }
+
+    static RuntimeError error(String path, IOException e) {
+        return new RuntimeError(null, "Can't access '" + path + "': " + e);
+    }
+}
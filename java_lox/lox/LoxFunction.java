@@ -15,6 +15,14 @@ class LoxFunction implements LoxCallable{
         this.isInitializer = isInitializer;
     }
 
+    String name() {
+        return name == null ? "<fn>" : name;
+    }
+
+    Expr.Function declaration() {
+        return declaration;
+    }
+
     LoxFunction bind(LoxInstance instance) {
         Environment environment = new Environment(closure);
         environment.define("self", instance);
@@ -42,17 +50,42 @@ class LoxFunction implements LoxCallable{
             }
         }
 
+        CallStack frames = interpreter.frames;
+        if (frames != null) enter(interpreter.runtime.profiler, frames);
+        LoxEvents.FunctionCall event = new LoxEvents.FunctionCall();
+        event.begin();
         try {
             interpreter.executeBlock(declaration.body, environment);
         } catch(Return returnValue) {
             if (isInitializer) return closure.getAt(0, "this");
 
             return returnValue.value;
+        } catch (RuntimeError error) {
+            error.unwind(name());
+            throw error;
+        } finally {
+            if (frames != null) leave(interpreter.runtime.profiler, frames);
+            event.end();
+            if (event.shouldCommit()) {
+                event.function = name();
+                event.commit();
+            }
         }
 
         if (isInitializer) return closure.getAt(0, "self");
         return null;
     }
+
+    // a stack is only sampled while it has frames
+    private void enter(Profiler profiler, CallStack frames) {
+        if (frames.isEmpty()) profiler.register(frames);
+        frames.push(name());
+    }
+
+    private void leave(Profiler profiler, CallStack frames) {
+        frames.pop();
+        if (frames.isEmpty()) profiler.unregister(frames);
+    }
     
     public boolean isGetter() {
         return declaration.parameters == null;
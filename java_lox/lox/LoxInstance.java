@@ -22,6 +22,17 @@ class LoxInstance {
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
+    // the field's value, or null if there is no such field
+    Object field(String name) {
+        return fields.get(name);
+    }
+
+    // null for natives, which have no class
+    LoxFunction findMethod(String name) {
+        if (klass == null) return null;
+        return klass.findMethod(name);
+    }
+
     void set(Token name, Object value) {
         fields.put(name.lexeme, value);
     }
@@ -0,0 +1,143 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Lines of a file, read lazily through a memory-mapped window that slides
+// along the file, so a file of any size is read in constant memory. Lines
+// end at '\n' (a preceding '\r' is dropped) and are decoded as UTF-8.
+class LoxLineReader extends LoxInstance {
+    private static final long WINDOW = 64L << 20;
+
+    private final String path;
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position = 0; // byte offset of the next line
+
+    LoxLineReader(String path) throws IOException {
+        super(null);
+        this.path = path;
+        this.channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    private void map(long start, long length) throws IOException {
+        length = Math.min(Math.min(length, Integer.MAX_VALUE), size - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+    }
+
+    // null at the end of the file
+    String nextLine() throws IOException {
+        if (position >= size) return null;
+
+        long length = WINDOW;
+        for (;;) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position, length);
+            }
+
+            int from = (int)(position - windowStart);
+            int limit = window.limit();
+            for (int i = from; i < limit; i++) {
+                if (window.get(i) == '\n') return line(from, i, i + 1);
+            }
+            if (windowStart + limit == size) return line(from, limit, limit);
+
+            // the line runs past the window: map again from where it starts,
+            // larger if it already did
+            if (from == 0) length = (long)limit * 2;
+            map(position, length);
+        }
+    }
+
+    private String line(int from, int end, int next) {
+        if (end > from && window.get(end - 1) == '\r') end--;
+        byte[] bytes = new byte[end - from];
+        window.get(from, bytes);
+        position = windowStart + next;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("next")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                // the next line, or nil at the end of the file
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    try {
+                        return nextLine();
+                    } catch (IOException e) {
+                        throw LoxFiles.error(path, e);
+                    }
+                }
+            };
+        } else if (name.lexeme.equals("seek")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 1;
+                }
+
+                // the next line starts at this byte offset
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    long offset = LoxNumbers.toLong(arguments.get(0));
+                    position = Math.max(0, Math.min(size, offset));
+                    return null;
+                }
+            };
+        } else if (name.lexeme.equals("close")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw LoxFiles.error(path, e);
+                    }
+                    window = null;
+                    position = size;
+                    return null;
+                }
+            };
+        } else if (name.lexeme.equals("hasNext")) {
+            return position < size;
+        } else if (name.lexeme.equals("position")) {
+            return position;
+        } else if (name.lexeme.equals("size")) {
+            return size;
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to line readers.");
+    }
+
+    @Override
+    public String toString() {
+        return "<lines " + path + ">";
+    }
+}
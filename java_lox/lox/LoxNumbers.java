@@ -0,0 +1,138 @@
+package java_lox.lox;
+
+// Lox has one number type but two representations: Long for integral
+// values and Double for everything else. Every integral value that fits in
+// a long is a Long, so equals/hashCode work across both, and Longs print and
+// produce -0 the way the equivalent doubles would. Integer arithmetic stays
+// in long and falls back to double only when it overflows or the result has
+// a fraction. The one difference scripts can see is that integer results
+// beyond 2^53 are exact where doubles would have rounded.
+final class LoxNumbers {
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private LoxNumbers() {}
+
+    static boolean isNumber(Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    // The canonical representation of value. -0.0 stays a Double: a long
+    // has no negative zero, and scripts print it as -0.
+    static Object of(double value) {
+        long integer = (long)value;
+        // (long) saturates, so 2^63 would otherwise pass as Long.MAX_VALUE
+        if (integer == value && value != 0x1p63 && !isNegativeZero(value)) return integer;
+        return value;
+    }
+
+    static boolean isNegativeZero(double value) {
+        return Double.doubleToRawLongBits(value) == NEGATIVE_ZERO;
+    }
+
+    // Double.toString switches to E notation from 10^7 on; Longs follow it
+    static boolean printsAsDouble(long value) {
+        return value <= -10_000_000L || value >= 10_000_000L;
+    }
+
+    static double toDouble(Object value) {
+        if (value instanceof Long) return (long)value;
+        if (value instanceof Double) return (double)value;
+        throw new RuntimeError(null, "Operand must be a number.");
+    }
+
+    // a fraction is dropped, as a cast would
+    static long toLong(Object value) {
+        if (value instanceof Long) return (long)value;
+        return (long)toDouble(value);
+    }
+
+    // an integer in [0, max], for indices, sizes and offsets
+    static int index(Object value, long max) {
+        if (!(value instanceof Long)) {
+            if (value instanceof Double && (double)value == 0) return 0;
+            if (value instanceof Double) throw new RuntimeError(null, "Index must be an integer.");
+            throw new RuntimeError(null, "Index must be a number.");
+        }
+        long index = (long)value;
+        if (index < 0 || index > max) {
+            throw new RuntimeError(null, "Index " + index + " is out of range.");
+        }
+        return (int)index;
+    }
+
+    // The operations below expect numbers, which the interpreter has checked.
+
+    static Object add(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long)left;
+            long b = (long)right;
+            long sum = a + b;
+            // overflow iff both operands have the other sign from the result
+            if (((a ^ sum) & (b ^ sum)) >= 0) return sum;
+            return of((double)a + (double)b);
+        }
+        return of(toDouble(left) + toDouble(right));
+    }
+
+    static Object subtract(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long)left;
+            long b = (long)right;
+            long difference = a - b;
+            if (((a ^ b) & (a ^ difference)) >= 0) return difference;
+            return of((double)a - (double)b);
+        }
+        return of(toDouble(left) - toDouble(right));
+    }
+
+    static Object multiply(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long)left;
+            long b = (long)right;
+            long product = a * b;
+            long high = Math.multiplyHigh(a, b);
+            if ((high == 0 && product >= 0) || (high == -1 && product < 0)) {
+                // 0 times a negative number is -0.0 in double arithmetic
+                if (product == 0 && (a < 0 || b < 0)) return -0.0;
+                return product;
+            }
+            return of((double)a * (double)b);
+        }
+        return of(toDouble(left) * toDouble(right));
+    }
+
+    // the divisor is not zero
+    static Object divide(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (long)left;
+            long b = (long)right;
+            if (a == 0 && b < 0) return -0.0;
+            if (a % b == 0 && !(a == Long.MIN_VALUE && b == -1)) return a / b;
+            return of((double)a / (double)b);
+        }
+        return of(toDouble(left) / toDouble(right));
+    }
+
+    static Object negate(Object value) {
+        if (value instanceof Long) {
+            long a = (long)value;
+            // -0 is -0.0, as it was before integers were longs
+            if (a == 0) return -0.0;
+            if (a != Long.MIN_VALUE) return -a;
+            return -(double)a;
+        }
+        return of(-(double)value);
+    }
+
+    static boolean isZero(Object value) {
+        return value instanceof Long ? (long)value == 0 : (double)value == 0;
+    }
+
+    // total order for sorting
+    static int compare(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return Long.compare((long)left, (long)right);
+        }
+        return Double.compare(toDouble(left), toDouble(right));
+    }
+}
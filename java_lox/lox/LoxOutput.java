@@ -0,0 +1,68 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+// Output of print statements. Values are formatted straight into a large
+// buffer that reaches the stream only when it fills up or on flush(), which
+// the runtime calls when a run ends, before it reports an error and after
+// every REPL line. Line-buffered mode flushes after each print instead.
+class LoxOutput {
+    private static final int CAPACITY = 1 << 16;
+
+    private final Writer writer;
+    private final StringBuilder buffer = new StringBuilder(CAPACITY + 1024);
+    private final char[] chunk = new char[8192];
+    private volatile boolean lineBuffered = false;
+
+    LoxOutput(OutputStream out) {
+        this.writer = new OutputStreamWriter(out, Charset.defaultCharset());
+    }
+
+    void setLineBuffered(boolean lineBuffered) {
+        this.lineBuffered = lineBuffered;
+    }
+
+    // prints like Interpreter.stringify without building the String
+    synchronized void println(Object value) {
+        if (value == null) {
+            buffer.append("nil");
+        } else if (value instanceof Long) {
+            long number = (long)value;
+            if (LoxNumbers.printsAsDouble(number)) buffer.append((double)number);
+            else buffer.append(number);
+        } else if (value instanceof Double) {
+            double number = (double)value;
+            if (LoxNumbers.isNegativeZero(number)) buffer.append("-0");
+            else buffer.append(number);
+        } else if (value instanceof String) {
+            buffer.append((String)value);
+        } else if (value instanceof StringView) {
+            ((StringView)value).appendTo(buffer);
+        } else {
+            buffer.append(value.toString());
+        }
+        buffer.append('\n');
+
+        if (lineBuffered || buffer.length() >= CAPACITY) flush();
+    }
+
+    synchronized void flush() {
+        try {
+            int length = buffer.length();
+            for (int offset = 0; offset < length; offset += chunk.length) {
+                int count = Math.min(chunk.length, length - offset);
+                buffer.getChars(offset, offset + count, chunk, 0);
+                writer.write(chunk, 0, count);
+            }
+            buffer.setLength(0);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
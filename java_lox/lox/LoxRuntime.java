@@ -0,0 +1,314 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One isolated Lox instance: its own globals, resolution table, error state
+// and output streams. Nothing is shared between runtimes, so a host can run
+// as many of them as it likes on separate threads. A single runtime is not
+// thread-safe and must be driven by one thread at a time.
+public class LoxRuntime {
+    private final LoxOutput output;
+    private final PrintStream err;
+    Interpreter interpreter;
+
+    volatile boolean hadError = false;
+    volatile boolean hadRuntimeError = false;
+
+    // spawned tasks that have not finished yet
+    private final Set<LoxTask> tasks = ConcurrentHashMap.newKeySet();
+    final ActorSystem actors = new ActorSystem(this);
+    // sampling profiler, null unless profile() was called
+    Profiler profiler;
+    // where the CountingInterpreter's report goes, null unless counting
+    private Path hotspots;
+
+    // only brace-match function bodies until their first call (see LazyBody)
+    private boolean lazyFunctions = false;
+    private boolean validateFunctions = false;
+    // lazy bodies not yet parsed and resolved; the cache is only written when
+    // there are none, since storing a body would force it
+    final AtomicInteger unparsedBodies = new AtomicInteger();
+    // read and write .loxc files next to scripts (see AstCache)
+    private boolean caching = true;
+
+    public LoxRuntime() {
+        this(System.out, System.err);
+    }
+
+    // Spawned tasks read the resolution table while the main thread is still
+    // resolving later statements into it, and lazy bodies are resolved by
+    // whichever thread calls them first, so it has to be a concurrent map.
+    public LoxRuntime(PrintStream out, PrintStream err) {
+        this(out, err, new ConcurrentHashMap<>());
+    }
+
+    // a runtime for one run of a CompiledProgram, reading its resolution table
+    LoxRuntime(PrintStream out, PrintStream err, Map<Expr, Integer> locals) {
+        this.output = new LoxOutput(out);
+        this.err = err;
+        this.interpreter = new Interpreter(this, locals);
+    }
+
+    public void preParseFunctions(boolean validate) {
+        this.lazyFunctions = true;
+        this.validateFunctions = validate;
+    }
+
+    // Sample the Lox call stacks hz times a second until finish(), which
+    // writes them to output in collapsed-stack format.
+    public void profile(Path output, int hz) {
+        profiler = new Profiler(output, hz);
+        interpreter.frames = new CallStack();
+        interpreter.frames.push("<script>");
+        profiler.register(interpreter.frames);
+    }
+
+    // Count every node executed and time every function call; finish()
+    // writes the hot spots to report. Call before running anything; it may
+    // come before or after profile().
+    public void countExecutions(Path report) {
+        CallStack frames = interpreter.frames;
+        interpreter = new CountingInterpreter(this, interpreter.locals);
+        // the profiler samples the stack profile() installed
+        interpreter.frames = frames;
+        hotspots = report;
+    }
+
+    // Flushes print output and writes out the profile and the hot-spot
+    // report, if they are on.
+    public void finish() throws IOException {
+        output.flush();
+        if (profiler != null) {
+            profiler.stop();
+            profiler = null;
+        }
+        if (hotspots != null) {
+            ((CountingInterpreter)interpreter).report(hotspots);
+            hotspots = null;
+        }
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    // run scripts from source every time, without reading or writing .loxc files
+    public void disableCache() {
+        caching = false;
+    }
+
+    // flush after every print instead of when the buffer fills up
+    public void setLineBuffered(boolean lineBuffered) {
+        output.setLineBuffered(lineBuffered);
+    }
+
+    LoxOutput output() {
+        return output;
+    }
+
+    public void runFile(Path source) throws IOException {
+        try {
+            loadOrRun(source);
+        } finally {
+            output.flush();
+        }
+    }
+
+    private void loadOrRun(Path source) throws IOException {
+        if (!caching) {
+            LoxEvents.Phase phase = LoxEvents.beginPhase("parse and execute");
+            try (Reader reader = Files.newBufferedReader(source, Charset.defaultCharset())) {
+                runStreaming(reader, false);
+            }
+            awaitTasks();
+            LoxEvents.endPhase(phase);
+            return;
+        }
+
+        AstCache cache = new AstCache(source);
+
+        // a valid .loxc skips scanning, parsing and resolving entirely
+        LoxEvents.Phase phase = LoxEvents.beginPhase("load cache");
+        List<Stmt> statements = cache.load(interpreter.locals);
+        LoxEvents.endPhase(phase);
+
+        if (statements != null) {
+            phase = LoxEvents.beginPhase("execute");
+            interpreter.interpret(statements);
+            awaitTasks();
+            LoxEvents.endPhase(phase);
+        } else {
+            phase = LoxEvents.beginPhase("parse and execute");
+            try (Reader reader = Files.newBufferedReader(source, Charset.defaultCharset())) {
+                statements = runStreaming(reader, cache.isWritable());
+            }
+            awaitTasks();
+            LoxEvents.endPhase(phase);
+
+            if (statements != null && !hadError && !hadRuntimeError && unparsedBodies.get() == 0) {
+                phase = LoxEvents.beginPhase("store cache");
+                cache.store(statements, interpreter.locals);
+                LoxEvents.endPhase(phase);
+            }
+        }
+    }
+
+    public void run(String source) {
+        try {
+            runSource(source);
+        } finally {
+            output.flush();
+        }
+    }
+
+    private void runSource(String source) {
+        LoxEvents.Phase phase = LoxEvents.beginPhase("parse");
+        Scanner scanner = new Scanner(source, this);
+        TokenBuffer tokens = scanner.scanTokens();
+        Parser parser = new Parser(tokens, this);
+        if (lazyFunctions) parser.preParseFunctions(validateFunctions);
+        List<Stmt> statements = parser.parse();
+        LoxEvents.endPhase(phase);
+
+        // Stop if there was a syntax error
+        if (hadError) return;
+
+        phase = LoxEvents.beginPhase("resolve");
+        Resolver resolver = new Resolver(interpreter);
+        resolver.resolve(statements);
+        LoxEvents.endPhase(phase);
+
+        // Stop if there was a resolution error
+        if (hadError) return;
+
+        phase = LoxEvents.beginPhase("execute");
+        interpreter.interpret(statements);
+        awaitTasks();
+        LoxEvents.endPhase(phase);
+    }
+
+    // One REPL line: statements are run, a bare expression is evaluated and
+    // its value printed.
+    public void runLine(String line) {
+        hadError = false;
+
+        Scanner scanner = new Scanner(line, this);
+        TokenBuffer tokens = scanner.scanTokens();
+
+        Parser parser = new Parser(tokens, this);
+        Object syntax = parser.parseRepl();
+
+        if (hadError) return;
+
+        if (syntax instanceof List) {
+            @SuppressWarnings("unchecked")
+            List<Stmt> statements = (List<Stmt>)syntax;
+            interpreter.interpret(statements);
+        } else if (syntax instanceof Expr) {
+            String result = interpreter.interpret((Expr)syntax);
+            if (result != null) {
+                output.println(result);
+            }
+        }
+        output.flush();
+    }
+
+    // Scan, parse, resolve and run one top-level statement at a time so that
+    // neither the whole source nor its token list is ever held in memory.
+    // With keep, the statements are also collected for the .loxc cache,
+    // which does retain the whole tree until the run ends; keeping stops,
+    // and null is returned, as soon as an error rules out storing it.
+    List<Stmt> runStreaming(Reader reader, boolean keep) {
+        Parser parser = new Parser(new Scanner(reader, this));
+        if (lazyFunctions) parser.preParseFunctions(validateFunctions);
+        Resolver resolver = new Resolver(interpreter);
+        List<Stmt> statements = keep ? new ArrayList<>() : null;
+
+        while (parser.hasNext()) {
+            Stmt statement = parser.parseNext();
+            if (hadError || hadRuntimeError) statements = null;
+            if (statements != null) statements.add(statement);
+
+            // After a syntax error keep parsing to report the rest, but stop running.
+            if (hadError || hadRuntimeError) continue;
+
+            resolver.resolve(statement);
+            if (hadError) continue;
+
+            interpreter.interpret(statement);
+        }
+        return statements;
+    }
+
+    void taskStarted(LoxTask task) {
+        tasks.add(task);
+    }
+
+    void taskFinished(LoxTask task) {
+        tasks.remove(task);
+    }
+
+    // A script is done once every task it spawned, directly or not, is done
+    // and every actor mailbox is empty.
+    void awaitTasks() {
+        do {
+            for (LoxTask task : tasks) {
+                task.join();
+            }
+            actors.await();
+        } while (!tasks.isEmpty());
+    }
+
+    void error(int line, String message) {
+        report(line, " ", message);
+    }
+
+    // need to be improve in order to enhance UX.
+    // lazy bodies may report from any task's thread
+    private synchronized void report(int line, String where, String message) {
+        output.flush();
+        err.println(
+            "[line" + line + "] Error" + where + ": " + message
+        );
+        hadError = true;
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    // may be called from any task's thread
+    synchronized void runtimeError(RuntimeError error) {
+        output.flush();
+        err.println(error.getMessage() +
+        "\n[line" + error.token.line + "]" + error.trace());
+        hadRuntimeError = true;
+
+        LoxEvents.RuntimeError event = new LoxEvents.RuntimeError();
+        if (event.isEnabled()) {
+            event.message = error.getMessage();
+            event.line = error.token.line;
+            event.trace = error.trace();
+            event.commit();
+        }
+    }
+}
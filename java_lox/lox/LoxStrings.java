@@ -0,0 +1,146 @@
+package java_lox.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Methods on string values and the helpers that let String, Rope and
+// StringView stand in for each other. Everything that slices a string
+// returns a StringView over the flat parent rather than a copy.
+class LoxStrings {
+    private LoxStrings() {}
+
+    // receiver.name for a string receiver
+    static Object get(CharSequence receiver, Token name) {
+        // every representation knows its length without laying out the
+        // characters, so appending and reading .length in a loop stays linear
+        final int length = receiver.length();
+        if (name.lexeme.equals("length")) return (long)length;
+
+        // a view slices its own parent, anything else is flattened once
+        final String parent;
+        final int offset;
+        if (receiver instanceof StringView) {
+            parent = ((StringView)receiver).parent;
+            offset = ((StringView)receiver).offset;
+        } else {
+            parent = receiver.toString();
+            offset = 0;
+        }
+
+        switch (name.lexeme) {
+            case "charAt":
+                return new LoxCallable() {
+                    @Override
+                    public int arity() {
+                        return 1;
+                    }
+
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        int index = LoxNumbers.index(arguments.get(0), length - 1);
+                        return String.valueOf(parent.charAt(offset + index));
+                    }
+                };
+            case "substring":
+                return new LoxCallable() {
+                    @Override
+                    public int arity() {
+                        return 2;
+                    }
+
+                    // substring(start, end), end may be nil for the rest
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        int start = LoxNumbers.index(arguments.get(0), length);
+                        int end = arguments.get(1) == null ? length : LoxNumbers.index(arguments.get(1), length);
+                        if (end < start) throw new RuntimeError(null, "Substring end is before its start.");
+                        return StringView.of(parent, offset + start, offset + end);
+                    }
+                };
+            case "indexOf":
+                return new LoxCallable() {
+                    @Override
+                    public int arity() {
+                        return 1;
+                    }
+
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        int found = indexOf(parent, offset, offset + length, string(arguments.get(0)));
+                        return (long)(found < 0 ? -1 : found - offset);
+                    }
+                };
+            case "split":
+                return new LoxCallable() {
+                    @Override
+                    public int arity() {
+                        return 1;
+                    }
+
+                    @Override
+                    public Object call(Interpreter interpreter, List<Object> arguments) {
+                        return split(parent, offset, offset + length, string(arguments.get(0)));
+                    }
+                };
+            default:
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+        }
+    }
+
+    // first needle in parent[from, to), or -1
+    private static int indexOf(String parent, int from, int to, String needle) {
+        if (to == parent.length()) return parent.indexOf(needle, from);
+
+        int last = to - needle.length();
+        for (int i = from; i <= last; i++) {
+            if (parent.startsWith(needle, i)) return i;
+        }
+        return -1;
+    }
+
+    // an empty separator splits into single characters
+    private static LoxArray split(String parent, int from, int to, String separator) {
+        List<Object> parts = new ArrayList<>();
+        if (separator.isEmpty()) {
+            for (int i = from; i < to; i++) parts.add(String.valueOf(parent.charAt(i)));
+            return new LoxArray(parts.toArray());
+        }
+
+        int start = from;
+        for (int found; (found = indexOf(parent, start, to, separator)) >= 0; ) {
+            parts.add(StringView.of(parent, start, found));
+            start = found + separator.length();
+        }
+        parts.add(StringView.of(parent, start, to));
+        return new LoxArray(parts.toArray());
+    }
+
+    private static String string(Object value) {
+        if (!(value instanceof CharSequence)) throw new RuntimeError(null, "Argument must be a string.");
+        return value.toString();
+    }
+
+    // replaces ropes and views in a native's arguments by plain strings
+    static void flatten(List<Object> values) {
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof CharSequence && !(value instanceof String)) {
+                values.set(i, value.toString());
+            }
+        }
+    }
+
+    // equality and ordering by content, whichever representation
+    static boolean equals(CharSequence a, CharSequence b) {
+        if (a.length() != b.length()) return false;
+        if (a instanceof Rope) a = a.toString();
+        if (b instanceof Rope) b = b.toString();
+        return CharSequence.compare(a, b) == 0;
+    }
+
+    static int compare(CharSequence a, CharSequence b) {
+        if (a instanceof Rope) a = a.toString();
+        if (b instanceof Rope) b = b.toString();
+        return CharSequence.compare(a, b);
+    }
+}
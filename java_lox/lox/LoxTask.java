@@ -0,0 +1,100 @@
+package java_lox.lox;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+// A function running on its own thread, started by spawn(). The task gets a
+// forked Interpreter, so its scopes are its own while globals are shared.
+// A runtime error inside the task is reported like any other and join()
+// then returns nil.
+class LoxTask extends LoxInstance {
+    private static final ExecutorService executor = newExecutor();
+
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    private LoxTask() {
+        super(null);
+    }
+
+    static LoxTask spawn(Interpreter interpreter, LoxCallable function) {
+        LoxTask task = new LoxTask();
+        Interpreter worker = interpreter.fork();
+        LoxRuntime runtime = interpreter.runtime;
+
+        runtime.taskStarted(task);
+        executor.execute(() -> {
+            try {
+                task.result.complete(function.call(worker, List.of()));
+            } catch (RuntimeError error) {
+                runtime.runtimeError(error);
+            } finally {
+                task.result.complete(null);
+                runtime.taskFinished(task);
+            }
+        });
+        return task;
+    }
+
+    Object join() {
+        return result.join();
+    }
+
+    @Override
+    Object get(Token name) {
+        if (name.lexeme.equals("join")) {
+            return new LoxCallable() {
+                @Override
+                public int arity() {
+                    return 0;
+                }
+
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return join();
+                }
+            };
+        } else if (name.lexeme.equals("done")) {
+            return result.isDone();
+        }
+
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to tasks.");
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+
+    // Virtual threads where the JDK has them (19+), so blocked tasks cost no
+    // platform thread. Otherwise a ForkJoinPool with one thread per core that
+    // adds threads while tasks block in channels or join() (both block
+    // through ForkJoinPool.managedBlock), up to MAX_THREADS in all. Past that
+    // blocked tasks keep their threads and new tasks queue behind them, so a
+    // program with more than MAX_THREADS tasks waiting on each other at once
+    // can deadlock on JDK 17.
+    private static final int MAX_THREADS = 256;
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService)Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return new ForkJoinPool(cores, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("lox-task-" + thread.getPoolIndex());
+                return thread;
+            }, null, true, 0, Math.max(cores, MAX_THREADS), 1, pool -> true, 60, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package java_lox.lox;
 import java.util.List;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 import static java_lox.lox.TokenType.*;
 
 class Parser {
@@ -10,8 +12,20 @@ class Parser {
     private boolean foundExpression = false;
     private static class ParseError extends RuntimeException {}
 
-    private final List<Token> tokens;
+    // Tokens live in a compact TokenBuffer and are only materialized as
+    // Token objects when the AST or an error message needs one. When
+    // streaming, consumed tokens are discarded as the buffer is refilled.
+    private static final int LOOKAHEAD = 256;
+    private final TokenBuffer tokens;
+    private final Scanner scanner;
+    private final LoxRuntime runtime;
     private int current = 0;
+    // whether this parser reported anything, for LazyBody
+    private boolean hadError = false;
+
+    // pre-parse mode: function bodies are only brace-matched (see LazyBody)
+    private boolean lazyFunctions = false;
+    private boolean validateFunctions = false;
 
     Object parseRepl() {
         allowExpression = true;
@@ -30,8 +44,17 @@ class Parser {
         return statements;
     }
     
-    Parser(List<Token> tokens) {
+    Parser(TokenBuffer tokens, LoxRuntime runtime) {
         this.tokens = tokens;
+        this.scanner = null;
+        this.runtime = runtime;
+    }
+
+    Parser(Scanner scanner) {
+        this.tokens = scanner.tokens();
+        this.scanner = scanner;
+        this.runtime = scanner.runtime();
+        fill(0);
     }
 
     List<Stmt> parse() {
@@ -42,6 +65,32 @@ class Parser {
         return statements;
     }
 
+    // Defer parsing of function bodies until their first call. With validate
+    // the bodies are still parsed up front so syntax errors surface eagerly;
+    // only their resolution is deferred.
+    void preParseFunctions(boolean validate) {
+        this.lazyFunctions = true;
+        this.validateFunctions = validate;
+    }
+
+    // parse the tokens of a pre-parsed function body, up to its closing brace
+    List<Stmt> parseFunctionBody() {
+        try {
+            return block();
+        } catch (ParseError error) {
+            return new ArrayList<>();
+        }
+    }
+
+    boolean hasNext() {
+        return !isAtEnd();
+    }
+
+    // parse a single top-level declaration, null after a syntax error
+    Stmt parseNext() {
+        return declaration();
+    }
+
     private Expr expression() {
         return assignment();
     }
@@ -86,9 +135,11 @@ class Parser {
     private Stmt statement() {
         if (match(PRINT)) return printStatement();
         if (match(RETURN)) return returnStatement();
+        if (match(BREAK, CONTINUE)) return loopExit();
         if (match(LEFT_BRACE)) return new Stmt.Block(block());
         if (match(IF)) return ifStatement();
         if (match(WHILE)) return whileStatement();
+        if (match(SWITCH)) return switchStatement();
         if (match(FOR)) return forStatement();
 
         return expressionStatement();
@@ -123,16 +174,10 @@ class Parser {
 
         Stmt body = statement();
 
-        // increment incrment after body
-        if (increment != null) {
-            body = new Stmt.Block(
-                Arrays.asList(body, new Stmt.Expression(increment))
-            );
-        }
-
-        // evaluate the condition after increment
+        // the loop runs the increment after the body, even on continue,
+        // then evaluates the condition again
         if (condition == null) condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = new Stmt.While(condition, body, increment);
 
         // run initializer before the loop.
         if (initializer != null) {
@@ -164,7 +209,7 @@ class Parser {
     private Stmt printStatement() {
         Expr value = expression();
         consume(SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Print(value);
+        return Superinstructions.print(value);
     }
 
     private Stmt returnStatement() {
@@ -195,7 +240,77 @@ class Parser {
         consume(RIGHT_PAREN, "Expext ')' after condition.");
         Stmt body = statement();
 
-        return new Stmt.While(condition, body);
+        return new Stmt.While(condition, body, null);
+    }
+
+    // switch (value) { case 1, 2: ... case "a": ... default: ... }
+    // Cases don't fall through, and break leaves the switch early. The
+    // labels are literals, so the jump table is built here, once.
+    private Stmt switchStatement() {
+        Token keyword = previous();
+        consume(LEFT_PAREN, "Expect '(' after 'switch'.");
+        Expr value = expression();
+        consume(RIGHT_PAREN, "Expect ')' after switch value.");
+        consume(LEFT_BRACE, "Expect '{' before switch cases.");
+
+        List<List<Object>> labels = new ArrayList<>();
+        List<Stmt> bodies = new ArrayList<>();
+        Stmt otherwise = null;
+        Set<Object> seen = new HashSet<>();
+        while (!check(RIGHT_BRACE) && !isAtEnd()) {
+            if (match(CASE)) {
+                List<Object> values = new ArrayList<>();
+                do {
+                    Token label = peek();
+                    Object literal = caseLabel();
+                    if (!seen.add(literal)) error(label, "Duplicate case label.");
+                    values.add(literal);
+                } while (match(COMMA));
+                consume(COLON, "Expect ':' after case label.");
+                labels.add(values);
+                bodies.add(caseBody());
+            } else if (match(DEFAULT)) {
+                Token token = previous();
+                consume(COLON, "Expect ':' after 'default'.");
+                if (otherwise != null) error(token, "A switch can only have one default.");
+                otherwise = caseBody();
+            } else {
+                throw error(peek(), "Expect 'case' or 'default'.");
+            }
+        }
+        consume(RIGHT_BRACE, "Expect '}' after switch cases.");
+
+        return new Stmt.Switch(keyword, value, labels, bodies, otherwise, SwitchTable.of(labels));
+    }
+
+    private Object caseLabel() {
+        if (match(FALSE)) return false;
+        if (match(TRUE)) return true;
+        if (match(NIL)) return null;
+        if (match(STRING)) return previous().literal;
+        boolean negative = match(MINUS);
+        if (match(NUMBER)) {
+            Object number = previous().literal;
+            return negative ? LoxNumbers.negate(number) : number;
+        }
+        throw error(peek(), "Case label must be a literal.");
+    }
+
+    // the statements up to the next case, in a scope of their own
+    private Stmt caseBody() {
+        List<Stmt> statements = new ArrayList<>();
+        while (!check(CASE) && !check(DEFAULT) && !check(RIGHT_BRACE) && !isAtEnd()) {
+            statements.add(declaration());
+        }
+        return new Stmt.Block(statements);
+    }
+
+    // break or continue; the Resolver checks that it is inside a loop
+    private Stmt loopExit() {
+        Token keyword = previous();
+        consume(SEMICOLON, "Expect ';' after '" + keyword.lexeme + "'.");
+        if (keyword.type == BREAK) return new Stmt.Break(keyword);
+        return new Stmt.Continue(keyword);
     }
 
     private Stmt expressionStatement() {
@@ -232,7 +347,7 @@ class Parser {
         }
 
         consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
-        List<Stmt> body = block();
+        List<Stmt> body = functionBlock();
 
         Expr.Function func_body = new Expr.Function(parameters, body);
         return new Stmt.Function(name, func_body);
@@ -251,10 +366,34 @@ class Parser {
         }
         consume(RIGHT_PAREN, "Expect ')' after parameters.");
         consume(LEFT_BRACE, "Expect '}' before " + kind + " body.");
-        List<Stmt> body = block();
+        List<Stmt> body = functionBlock();
         return new Expr.Function(parameters, body);
     }
 
+    private List<Stmt> functionBlock() {
+        if (!lazyFunctions) return block();
+
+        // brace-match the body and keep its tokens, closing brace included
+        TokenBuffer body = tokens.fork();
+        Set<String> names = new HashSet<>();
+        int depth = 1;
+        while (depth > 0) {
+            if (isAtEnd()) throw error(peek(), "Expect '}' after block.");
+
+            TokenType type = peekType();
+            if (type == LEFT_BRACE) depth++;
+            if (type == RIGHT_BRACE) depth--;
+            if (type == IDENTIFIER) names.add(tokens.lexeme(current));
+            tokens.copyTo(current, body);
+            advance();
+        }
+        body.add(EOF, tokens.end(current - 1), tokens.end(current - 1), tokens.line(current - 1), -1);
+
+        LazyBody lazy = new LazyBody(body, names, runtime);
+        if (validateFunctions) lazy.parse();
+        return lazy;
+    }
+
     private List<Stmt> block() {
         List<Stmt> statements = new ArrayList<>();
 
@@ -299,7 +438,7 @@ class Parser {
 
             if (expr instanceof Expr.Variable) {
                 Token name = ((Expr.Variable)expr).name;
-                return new Expr.Assign(name, value);
+                return Superinstructions.assign(name, value);
             } else if (expr instanceof Expr.Get) {
                 Expr.Get get = (Expr.Get)expr;
                 // parse the left hand side as a normal expression
@@ -342,7 +481,7 @@ class Parser {
         while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
             Token operator = previous();
             Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = Superinstructions.binary(expr, operator, right);
         }
         return expr;
     }
@@ -406,7 +545,7 @@ class Parser {
             } else if (match(DOT)) {
                 Token name = consume(IDENTIFIER,
                         "Expect property name after '.'.");
-                expr = new Expr.Get(expr, name);
+                expr = Superinstructions.get(expr, name);
             } else {
                 break;
             }
@@ -484,40 +623,68 @@ class Parser {
     }
 
     private Token consume(TokenType type, String message) {
-        if (check(type)) return advance();
+        if (check(type)) {
+            advance();
+            return previous();
+        }
         throw error(peek(), message);
     }
  
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return peekType() == type;
     }
 
     private boolean checkNext(TokenType tokenType) {
         if (isAtEnd()) return false;
-        if (tokens.get(current + 1).type == EOF) return false;
-        return tokens.get(current + 1).type == tokenType;
+        fill(current + 1);
+        if (tokens.type(current + 1) == EOF) return false;
+        return tokens.type(current + 1) == tokenType;
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private void advance() {
+        if (!isAtEnd()) {
+            current++;
+            fill(current);
+        }
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return peekType() == EOF;
+    }
+
+    private TokenType peekType() {
+        return tokens.type(current);
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
+    }
+
+    // make sure the token at index is buffered, pulling more from the scanner
+    private void fill(int index) {
+        if (scanner == null || index < tokens.size()) return;
+
+        // keep only the previous token
+        if (current > 1) {
+            tokens.discard(current - 1);
+            index -= current - 1;
+            current = 1;
+        }
+        while (index >= tokens.size() && scanner.scanMore(LOOKAHEAD));
+    }
+
+    boolean hadError() {
+        return hadError;
     }
 
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        hadError = true;
+        runtime.error(token, message);
         return new ParseError();
     }
 
@@ -525,14 +692,15 @@ class Parser {
     private void synchronize() {
         advance();
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
+            if (tokens.type(current - 1) == SEMICOLON) return;
 
-            switch (peek().type) {
+            switch (peekType()) {
                 case CLASS: case FOR: case FUN: case IF: case PRINT:
-                case RETURN: case VAR: case WHILE:
+                case RETURN: case SWITCH: case VAR: case WHILE:
                     return;
             }
+
+            advance();
         }
-        advance();
     }
 }
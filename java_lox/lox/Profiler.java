@@ -0,0 +1,78 @@
+package java_lox.lox;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sampling profiler for Lox code. While it runs, every Interpreter of the
+// runtime keeps a CallStack; a daemon thread wakes up `hz` times a second,
+// reads each stack that is not empty and counts it. stop() writes the counts
+// in collapsed-stack format ("main:12;fib:5;fib 42" per line), ready for
+// flamegraph.pl or speedscope.
+class Profiler {
+    private final Path output;
+    private final long intervalNanos;
+    private final Set<CallStack> stacks = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> samples = new HashMap<>(); // sampler thread only
+    private final Thread sampler;
+    private volatile boolean running = true;
+
+    Profiler(Path output, int hz) {
+        this.output = output;
+        this.intervalNanos = 1_000_000_000L / Math.max(1, hz);
+        this.sampler = new Thread(this::sample, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void register(CallStack stack) {
+        stacks.add(stack);
+    }
+
+    void unregister(CallStack stack) {
+        stacks.remove(stack);
+    }
+
+    private void sample() {
+        long next = System.nanoTime();
+        while (running) {
+            for (CallStack stack : stacks) {
+                String collapsed = stack.collapsed();
+                if (collapsed != null) samples.merge(collapsed, 1, Integer::sum);
+            }
+
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int)(wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                next = System.nanoTime(); // fell behind, don't try to catch up
+            }
+        }
+    }
+
+    void stop() throws IOException {
+        running = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Integer> entry : samples.entrySet()) {
+                writer.println(entry.getKey() + " " + entry.getValue());
+            }
+        }
+    }
+}
@@ -9,9 +9,15 @@ import java_lox.lox.Expr.Function;
 import java_lox.lox.Stmt.Var;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
+    private final Map<Expr, Integer> locals;
+    private final LoxRuntime runtime;
+    // whether this resolver reported anything, for LazyBody
+    private boolean hadError = false;
     private final Stack<Map<String, Variable>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
+    // loops and switches enclosing the current statement within the current function
+    private int loopDepth = 0;
+    private int switchDepth = 0;
 
     private static class Variable {
         final Token name;
@@ -30,7 +36,32 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+        this(interpreter.locals, interpreter.runtime);
+    }
+
+    Resolver(Map<Expr, Integer> locals, LoxRuntime runtime) {
+        this.locals = locals;
+        this.runtime = runtime;
+    }
+
+    // Snapshot of the scopes around a lazily parsed function body. Variables
+    // from enclosing scopes are copied as already read; only the body's own
+    // scope can still report unused locals.
+    private Resolver(Resolver enclosing) {
+        this.locals = enclosing.locals;
+        this.runtime = enclosing.runtime;
+        this.currentFunction = enclosing.currentFunction;
+        this.currentClass = enclosing.currentClass;
+        for (int i = 0; i < enclosing.scopes.size(); i++) {
+            Map<String, Variable> scope = new HashMap<>();
+            boolean inner = i == enclosing.scopes.size() - 1;
+            for (Map.Entry<String, Variable> entry : enclosing.scopes.get(i).entrySet()) {
+                Variable variable = entry.getValue();
+                scope.put(entry.getKey(), new Variable(variable.name,
+                        inner ? variable.state : VariableState.READ));
+            }
+            scopes.push(scope);
+        }
     }
 
     private enum ClassType {
@@ -56,6 +87,32 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (loopDepth == 0 && switchDepth == 0) {
+            error(stmt.keyword, "Can't use 'break' outside of a loop or switch.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        if (loopDepth == 0) {
+            error(stmt.keyword, "Can't use 'continue' outside of a loop.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        resolve(stmt.value);
+        switchDepth++;
+        resolve(stmt.bodies);
+        if (stmt.otherwise != null) resolve(stmt.otherwise);
+        switchDepth--;
+        return null;
+    }
+
     @Override
     public Void visitClassStmt(Stmt.Class stmt) {
         ClassType enclosingClass = currentClass;
@@ -65,7 +122,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         define(stmt.name);
         if (stmt.superclass != null && 
             stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-                Lox.error(stmt.superclass.name, "A class can't inherit from itself.");
+                error(stmt.superclass.name, "A class can't inherit from itself.");
             }
         if (stmt.superclass != null) {
             currentClass = ClassType.SUBCLASS;
@@ -125,12 +182,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (currentFunction == FunctionType.NONE) {
-            Lox.error(stmt.keyword, "Can't return from top-level code.");
+            error(stmt.keyword, "Can't return from top-level code.");
         }
 
         if (stmt.value != null) {
             if (currentFunction == FunctionType.INITIALIZER) {
-                Lox.error(stmt.keyword, 
+                error(stmt.keyword, 
                 "Can't return a value from an initializer.");
             }
             resolve(stmt.value);
@@ -161,7 +218,10 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         resolve(stmt.condition);
+        loopDepth++;
         resolve(stmt.body);
+        loopDepth--;
+        if (stmt.increment != null) resolve(stmt.increment);
         return null;
     }
 
@@ -169,7 +229,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitVariableExpr(Expr.Variable expr) {
         if (!scopes.isEmpty() && scopes.peek().containsKey(expr.name.lexeme) &&
             scopes.peek().get(expr.name.lexeme).state == VariableState.DECLARED) {
-            Lox.error(expr.name, 
+            error(expr.name, 
             "Can't read local variable in its own initializer.");
         }
 
@@ -185,7 +245,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
-    private void resolve(Stmt stmt) {
+    void resolve(Stmt stmt) {
         stmt.accept(this);
     }
 
@@ -251,9 +311,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSuperExpr(Expr.Super expr) {
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword, "Can't use 'super' outside of a class.");
+            error(expr.keyword, "Can't use 'super' outside of a class.");
         } else if (currentClass != ClassType.SUBCLASS) {
-            Lox.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
+            error(expr.keyword, "Can't use 'super' in a class with no superclass.");
         }
         resolveLocal(expr, expr.keyword, true);
         return null;
@@ -262,7 +322,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSelfExpr(Expr.Self expr) {
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword, 
+            error(expr.keyword, 
             "Can't use 'self' outside of a class.");
             return null;
         }
@@ -295,7 +355,11 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private void resolveFunction(Stmt.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
+        int enclosingLoops = loopDepth;
+        int enclosingSwitches = switchDepth;
         currentFunction = type;
+        loopDepth = 0;
+        switchDepth = 0;
 
         beginScope();
         if (function.function.parameters != null) {
@@ -304,23 +368,70 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
                 define(param);
             }
         }
-        resolve(function.function.body);
-        endScope();
+        resolveBody(function.function.body);
         currentFunction = enclosingFunction;
+        loopDepth = enclosingLoops;
+        switchDepth = enclosingSwitches;
     }
 
     private void resolveFunction(Expr.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
+        int enclosingLoops = loopDepth;
+        int enclosingSwitches = switchDepth;
         currentFunction = type;
+        loopDepth = 0;
+        switchDepth = 0;
 
         beginScope();
         for (Token param : function.parameters) {
             declare(param);
             define(param);
         }
-        resolve(function.body);
-        endScope();
+        resolveBody(function.body);
         currentFunction = enclosingFunction;
+        loopDepth = enclosingLoops;
+        switchDepth = enclosingSwitches;
+    }
+
+    // resolve a function body inside its already open parameter scope
+    private void resolveBody(List<Stmt> body) {
+        if (body instanceof LazyBody && !((LazyBody)body).isReady()) {
+            LazyBody lazy = (LazyBody)body;
+            for (String name : lazy.names) {
+                markRead(name);
+            }
+            lazy.defer(new Resolver(this));
+            scopes.pop();
+            return;
+        }
+
+        resolve(body);
+        endScope();
+    }
+
+    // finish a lazily parsed body from the snapshot taken by resolveBody
+    void resolveDeferred(List<Stmt> body) {
+        resolve(body);
+        endScope();
+    }
+
+    boolean hadError() {
+        return hadError;
+    }
+
+    private void error(Token token, String message) {
+        hadError = true;
+        runtime.error(token, message);
+    }
+
+    private void markRead(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Variable variable = scopes.get(i).get(name);
+            if (variable != null) {
+                variable.state = VariableState.READ;
+                return;
+            }
+        }
     }
 
     private void beginScope() {
@@ -332,7 +443,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         for (Map.Entry<String, Variable> entry : scope.entrySet()) {
             if (entry.getValue().state == VariableState.DEFINED) {
-                Lox.error(entry.getValue().name, "Local Variable is not used.");
+                error(entry.getValue().name, "Local Variable is not used.");
             }
         }
     }
@@ -342,7 +453,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         Map<String, Variable> scope = scopes.peek();
         if (scope.containsKey(name.lexeme)) {
-            Lox.error(name,
+            error(name,
             "Already a variable with this name in this scope.");
         }
 
@@ -357,7 +468,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void resolveLocal(Expr expr, Token name, boolean isRead) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
             if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
+                locals.put(expr, scopes.size() - 1 - i);
 
                 // Mark it used.
                 if (isRead) {
@@ -0,0 +1,118 @@
+package java_lox.lox;
+
+import java.util.ArrayDeque;
+
+// Lazy string concatenation. a + b on strings makes a Rope node in O(1)
+// instead of copying both sides; the characters are only laid out when the
+// string is compared, printed or handed to a native, and the flat String is
+// kept for next time. Lox strings are therefore a String, a Rope or a
+// StringView, and code that needs the characters calls toString().
+//
+// Nodes never change after construction, so ropes can be shared between
+// threads; two threads flattening the same rope at once just both do it.
+final class Rope implements CharSequence {
+    // below this, copying is cheaper than another node
+    private static final int SHORT = 64;
+
+    private final CharSequence left;
+    private final CharSequence right;
+    private final int length;
+    private volatile String flat;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length() + right.length();
+    }
+
+    static CharSequence concat(CharSequence left, CharSequence right) {
+        if (left.length() == 0) return right;
+        if (right.length() == 0) return left;
+        if ((long)left.length() + right.length() > Integer.MAX_VALUE) {
+            throw new RuntimeError(null, "String is too long.");
+        }
+
+        // A rope that has been flattened is replaced by its flat String, so
+        // the new node doesn't keep the old tree alive along with the copy.
+        left = settled(left);
+        right = settled(right);
+
+        if (left.length() + right.length() <= SHORT) {
+            return left.toString().concat(right.toString());
+        }
+        // appending a little at a time: grow the short right end instead
+        // of adding a node per append
+        if (left instanceof Rope && right.length() < SHORT) {
+            Rope rope = (Rope)left;
+            if (rope.right.length() + right.length() <= SHORT) {
+                return new Rope(settled(rope.left), rope.right.toString().concat(right.toString()));
+            }
+        }
+        return new Rope(left, right);
+    }
+
+    private static CharSequence settled(CharSequence string) {
+        if (string instanceof Rope) {
+            String flat = ((Rope)string).flat;
+            if (flat != null) return flat;
+        }
+        return string;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String flat = this.flat;
+        if (flat == null) {
+            flat = flatten();
+            this.flat = flat;
+        }
+        return flat;
+    }
+
+    // iterative, since ropes built in a loop are as deep as the loop is long
+    private String flatten() {
+        char[] chars = new char[length];
+        int position = 0;
+        ArrayDeque<CharSequence> pending = new ArrayDeque<>();
+        pending.push(right);
+        pending.push(left);
+
+        while (!pending.isEmpty()) {
+            CharSequence part = pending.pop();
+            if (part instanceof Rope) {
+                Rope rope = (Rope)part;
+                String done = rope.flat;
+                if (done == null) {
+                    pending.push(rope.right);
+                    pending.push(rope.left);
+                    continue;
+                }
+                part = done;
+            }
+
+            if (part instanceof StringView) {
+                ((StringView)part).getChars(chars, position);
+            } else {
+                String string = part.toString();
+                string.getChars(0, string.length(), chars, position);
+            }
+            position += part.length();
+        }
+        return new String(chars);
+    }
+}
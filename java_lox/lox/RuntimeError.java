@@ -1,11 +1,51 @@
 package java_lox.lox;
 
+import java.util.ArrayList;
+import java.util.List;
+
 class RuntimeError extends RuntimeException {
+    // deeper frames are only counted
+    private static final int MAX_FRAMES = 32;
+
     final Token token;
+    // Lox frames the error has unwound through, innermost first, recorded by
+    // LoxFunction.call on the way out. Calls that don't fail pay nothing.
+    private List<String> frames;
+    private int omitted = 0;
+    // line executing in the frame the error is leaving, -1 until known
+    private int line;
 
     RuntimeError(Token token, String message) {
-        super(message);
+        // reported with the Lox trace, so the Java one is never filled in
+        super(message, null, false, false);
         this.token = token;
-        
+        this.line = token == null ? -1 : token.line;
+    }
+
+    // the error is passing the call expression at line in its caller
+    void callSite(int line) {
+        this.line = line;
+    }
+
+    // the error is leaving function's frame
+    void unwind(String function) {
+        if (frames == null) frames = new ArrayList<>();
+        if (frames.size() < MAX_FRAMES) {
+            frames.add(line < 0 ? function : function + " (line " + line + ")");
+        } else {
+            omitted++;
+        }
+        line = -1;
+    }
+
+    // one "  at" line per frame, innermost first; empty outside functions
+    String trace() {
+        if (frames == null) return "";
+
+        StringBuilder builder = new StringBuilder();
+        for (String frame : frames) builder.append("\n  at ").append(frame);
+        if (omitted > 0) builder.append("\n  ... ").append(omitted).append(" more");
+        if (line >= 0) builder.append("\n  at <script> (line ").append(line).append(")");
+        return builder.toString();
     }
-}
\ No newline at end of file
+}
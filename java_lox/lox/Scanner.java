@@ -1,61 +1,85 @@
 package java_lox.lox;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import javax.swing.text.html.HTMLEditorKit.Parser;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
 // TokenTypeクラスまたはインターフェースに定義されているすべての静的メンバーをインポート
 import static java_lox.lox.TokenType.*;
 
 class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private static final int CHUNK = 64 * 1024;
+
+    // source window: the whole script, or the part of a Reader not yet scanned
+    private char[] source;
+    private int length;
+    private int offset = 0; // absolute position of source[0]
+    private final Reader reader;
+    private final LoxRuntime runtime;
+    private final LexemeTable lexemes = new LexemeTable();
+    private final TokenBuffer tokens;
 
     private int start = 0; // first character being scanned
     private int current = 0; // current character being scanned
     private int line = 1; // what source line current is on
-    
+    private boolean done = false; // EOF token emitted
+
     // raw source code
-    Scanner(String source) {
+    Scanner(String source, LoxRuntime runtime) {
+        this(source.toCharArray(), runtime);
+    }
+
+    Scanner(char[] source, LoxRuntime runtime) {
         this.source = source;
+        this.length = source.length;
+        this.reader = null;
+        this.runtime = runtime;
+        // roughly one token every four characters in typical scripts
+        this.tokens = new TokenBuffer(lexemes, length / 4);
     }
 
-    List<Token> scanTokens() {
-        while (!isAtEnd()) {
-            start = current;
-            scanToken();
-        }
+    // stream the source; only the token being scanned is kept in memory
+    Scanner(Reader reader, LoxRuntime runtime) {
+        this.source = new char[CHUNK];
+        this.length = 0;
+        this.reader = reader;
+        this.runtime = runtime;
+        this.tokens = new TokenBuffer(lexemes, 0);
+    }
+
+    TokenBuffer scanTokens() {
+        while (scanMore(CHUNK));
+        return tokens;
+    }
 
-        // add end of file(EOF) token to the end of the file.
-        // not necessarily needed but cleaner
-        tokens.add(new Token(EOF, "", null, line));
+    TokenBuffer tokens() {
         return tokens;
     }
 
-    private static final Map<String, TokenType> keywords;
-
-    // keyword-map
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and",    AND);
-        keywords.put("class",  CLASS);
-        keywords.put("else",   ELSE);
-        keywords.put("false",  FALSE);
-        keywords.put("for",    FOR);
-        keywords.put("fun",    FUN);
-        keywords.put("if",     IF);
-        keywords.put("nil",    NIL);
-        keywords.put("or",     OR);
-        keywords.put("print",  PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super",  SUPER);
-        keywords.put("self",   SELF);
-        keywords.put("true",   TRUE);
-        keywords.put("var",    VAR);
-        keywords.put("while",  WHILE);
+    LoxRuntime runtime() {
+        return runtime;
+    }
+
+    // Scan up to count more tokens into the buffer, scanning only as much
+    // source as they need. Returns false once EOF has been added.
+    boolean scanMore(int count) {
+        if (done) return false;
+
+        int target = tokens.size() + count;
+        while (tokens.size() < target) {
+            if (isAtEnd()) {
+                // add end of file(EOF) token to the end of the file.
+                // not necessarily needed but cleaner
+                start = current;
+                addToken(EOF);
+                done = true;
+                return false;
+            }
+            start = current;
+            scanToken();
+        }
+        return true;
     }
 
     private void scanToken() {
@@ -89,13 +113,13 @@ class Scanner {
                 addToken(match('=') ? BANG_EQUAL: BANG);
                 break;
             case '=':
-                addToken(match('=')? EQUAL_EQUAL: EQUAL);
+                addToken(match('=') ? EQUAL_EQUAL: EQUAL);
                 break;
             case '<':
-                addToken(match('=')? LESS_EQUAL: LESS);
+                addToken(match('=') ? LESS_EQUAL: LESS);
                 break;
             case '>':
-                addToken(match('=')? GREATER_EQUAL: GREATER);
+                addToken(match('=') ? GREATER_EQUAL: GREATER);
                 break;
 
             case ' ':
@@ -116,7 +140,7 @@ class Scanner {
                 } else if(isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexprected character.");
+                    runtime.error(line, "Unexprected character.");
                 }
                 break;
         }
@@ -126,7 +150,7 @@ class Scanner {
         int nesting = 1;
         while (nesting > 0) {
             if (peek() == '\0') {
-                Lox.error(line, "Unterminated block comment.");
+                runtime.error(line, "Unterminated block comment.");
                 return;
             }
 
@@ -151,22 +175,95 @@ class Scanner {
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        TokenType type = keywordType();
+        if (type != IDENTIFIER) {
+            addToken(type);
+            return;
+        }
+
+        LexemeTable.Entry entry = lexemes.intern(source, start, current - start);
+        addToken(IDENTIFIER, entry);
+    }
+
+    // keyword trie: switch on the leading characters, then compare the rest in place
+    private TokenType keywordType() {
+        switch (source[start]) {
+            case 'a': return checkKeyword(1, "nd", AND);
+            case 'b': return checkKeyword(1, "reak", BREAK);
+            case 'c':
+                if (current - start > 1) {
+                    switch (source[start + 1]) {
+                        case 'a': return checkKeyword(2, "se", CASE);
+                        case 'l': return checkKeyword(2, "ass", CLASS);
+                        case 'o': return checkKeyword(2, "ntinue", CONTINUE);
+                    }
+                }
+                break;
+            case 'd': return checkKeyword(1, "efault", DEFAULT);
+            case 'e': return checkKeyword(1, "lse", ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source[start + 1]) {
+                        case 'a': return checkKeyword(2, "lse", FALSE);
+                        case 'o': return checkKeyword(2, "r", FOR);
+                        case 'u': return checkKeyword(2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(1, "f", IF);
+            case 'n': return checkKeyword(1, "il", NIL);
+            case 'o': return checkKeyword(1, "r", OR);
+            case 'p': return checkKeyword(1, "rint", PRINT);
+            case 'r': return checkKeyword(1, "eturn", RETURN);
+            case 's':
+                if (current - start > 1) {
+                    switch (source[start + 1]) {
+                        case 'e': return checkKeyword(2, "lf", SELF);
+                        case 'u': return checkKeyword(2, "per", SUPER);
+                        case 'w': return checkKeyword(2, "itch", SWITCH);
+                    }
+                }
+                break;
+            case 't': return checkKeyword(1, "rue", TRUE);
+            case 'v': return checkKeyword(1, "ar", VAR);
+            case 'w': return checkKeyword(1, "hile", WHILE);
+        }
+
+        return IDENTIFIER;
+    }
+
+    private TokenType checkKeyword(int offset, String rest, TokenType type) {
+        if (current - start != offset + rest.length()) return IDENTIFIER;
+
+        for (int i = 0; i < rest.length(); i++) {
+            if (source[start + offset + i] != rest.charAt(i)) return IDENTIFIER;
+        }
+        return type;
     }
 
     private void number() {
-        while (isDigit(peek())) advance();
+        long integer = c2d(source[start]);
+        while (isDigit(peek())) integer = integer * 10 + c2d(advance());
 
+        boolean fraction = false;
         if (peek() == '.' && isDigit(peekNext())) {
+            fraction = true;
             advance();
             while (isDigit(peek())) advance();
         }
 
-        // This interpreter uses java's Double type to represent numbers(you can inplement one by your own)
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        // repeated literals (0, 1, ...) share one lexeme and one boxed value
+        LexemeTable.Entry entry = lexemes.intern(source, start, current - start);
+        if (entry.literal == null) {
+            // Integral numbers are Longs and the rest Doubles (see LoxNumbers).
+            // Up to 18 digits can't overflow, everything else goes through the JDK parser.
+            if (!fraction && current - start <= 18) {
+                entry.literal = integer;
+            } else {
+                entry.literal = LoxNumbers.of(Double.parseDouble(entry.lexeme));
+            }
+        }
+        addToken(NUMBER, entry);
     }
 
     private void string() {
@@ -176,19 +273,22 @@ class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
+            runtime.error(line, "Unterminated string.");
             return;
         }
         advance();
 
-        // Trim the surrounding quotes
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        LexemeTable.Entry entry = lexemes.intern(source, start, current - start);
+        if (entry.literal == null) {
+            // Trim the surrounding quotes
+            entry.literal = entry.lexeme.substring(1, entry.lexeme.length() - 1);
+        }
+        addToken(STRING, entry);
     }
 
     private boolean match(char expected) {
         if (isAtEnd()) return false;
-        if (source.charAt(current) != expected) return false;
+        if (source[current] != expected) return false;
 
         current++;
         return true;
@@ -196,42 +296,73 @@ class Scanner {
 
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return source[current];
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        if (current + 1 >= length) fill();
+        if (current + 1 >= length) return '\0';
+        return source[current + 1];
     }
 
-    private boolean isAlpha(char c) {
+    private static boolean isAlpha(char c) {
         return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
     }
 
-    private boolean isAlphaNumeric(char c) {
+    private static boolean isAlphaNumeric(char c) {
         return isAlpha(c) || isDigit(c);
     }
 
-    private boolean isDigit(char c) {
+    private static boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
 
+    private static int c2d(char c) {
+        return c - '0';
+    }
+
     // consume next character, return it
     private char advance() {
-        return source.charAt(current++);
+        if (current >= length) fill();
+        return source[current++];
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
+        tokens.add(type, offset + start, offset + current, line, -1);
     }
 
-    // addToken for literals
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    // addToken for identifiers and literals
+    private void addToken(TokenType type, LexemeTable.Entry entry) {
+        tokens.add(type, offset + start, offset + current, line, entry.id);
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= length && !fill();
+    }
+
+    // Read the next chunk from the reader. The lexeme being scanned (from
+    // start) is moved to the front of the window so it stays contiguous.
+    private boolean fill() {
+        if (reader == null) return false;
+
+        int kept = length - start;
+        if (kept == source.length) {
+            source = Arrays.copyOf(source, source.length * 2);
+        } else if (start > 0) {
+            System.arraycopy(source, start, source, 0, kept);
+        }
+        current -= start;
+        offset += start;
+        start = 0;
+        length = kept;
+
+        try {
+            int read = reader.read(source, length, source.length - length);
+            if (read <= 0) return false;
+            length += read;
+            return true;
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
     }
 }
@@ -5,12 +5,15 @@ import java.util.List;
 abstract class Stmt {
   interface Visitor<R> {
     R visitBlockStmt(Block stmt);
+    R visitBreakStmt(Break stmt);
     R visitClassStmt(Class stmt);
+    R visitContinueStmt(Continue stmt);
     R visitExpressionStmt(Expression stmt);
     R visitFunctionStmt(Function stmt);
     R visitIfStmt(If stmt);
     R visitPrintStmt(Print stmt);
     R visitReturnStmt(Return stmt);
+    R visitSwitchStmt(Switch stmt);
     R visitWhileStmt(While stmt);
     R visitVarStmt(Var stmt);
   }
@@ -26,6 +29,18 @@ abstract class Stmt {
 
     final List<Stmt> statements;
   }
+  static class Break extends Stmt {
+    Break(Token keyword) {
+      this.keyword = keyword;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitBreakStmt(this);
+    }
+
+    final Token keyword;
+  }
   static class Class extends Stmt {
     Class(Token name, List<Stmt.Function> methods, Expr.Variable superclass, List<Stmt.Function> classMethods) {
       this.name = name;
@@ -44,6 +59,18 @@ abstract class Stmt {
     final Expr.Variable superclass;
     final List<Stmt.Function> classMethods;
   }
+  static class Continue extends Stmt {
+    Continue(Token keyword) {
+      this.keyword = keyword;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitContinueStmt(this);
+    }
+
+    final Token keyword;
+  }
   static class Expression extends Stmt {
     Expression(Expr expression) {
       this.expression = expression;
@@ -112,10 +139,33 @@ abstract class Stmt {
     final Token keyword;
     final Expr value;
   }
+  static class Switch extends Stmt {
+    Switch(Token keyword, Expr value, List<List<Object>> labels, List<Stmt> bodies, Stmt otherwise, SwitchTable table) {
+      this.keyword = keyword;
+      this.value = value;
+      this.labels = labels;
+      this.bodies = bodies;
+      this.otherwise = otherwise;
+      this.table = table;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSwitchStmt(this);
+    }
+
+    final Token keyword;
+    final Expr value;
+    final List<List<Object>> labels;
+    final List<Stmt> bodies;
+    final Stmt otherwise;
+    final SwitchTable table;
+  }
   static class While extends Stmt {
-    While(Expr condition, Stmt body) {
+    While(Expr condition, Stmt body, Expr increment) {
       this.condition = condition;
       this.body = body;
+      this.increment = increment;
     }
 
     @Override
@@ -125,6 +175,7 @@ abstract class Stmt {
 
     final Expr condition;
     final Stmt body;
+    final Expr increment;
   }
   static class Var extends Stmt {
     Var(Token name, Expr initializer) {
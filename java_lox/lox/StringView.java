@@ -0,0 +1,83 @@
+package java_lox.lox;
+
+// A slice of a flat string that shares its characters instead of copying
+// them; substring, split and friends return these. A view keeps its whole
+// parent alive, so one that escapes into a field or a global while holding
+// only a small part of a large parent is compacted into its own String
+// (see compact).
+//
+// Views never change, so they can be shared between threads like any other
+// Lox string.
+final class StringView implements CharSequence {
+    // shorter results are copied, a view costs about as much as the chars
+    static final int SHORT = 16;
+    // parents smaller than this are never worth compacting away from
+    private static final int LARGE = 1024;
+
+    final String parent;
+    final int offset;
+    private final int length;
+    private volatile String flat;
+
+    private StringView(String parent, int offset, int length) {
+        this.parent = parent;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // parent[start, end) as a view, or as a copy when that is cheaper
+    static CharSequence of(String parent, int start, int end) {
+        if (start == 0 && end == parent.length()) return parent;
+        if (end - start <= SHORT) return parent.substring(start, end);
+        return new StringView(parent, start, end - start);
+    }
+
+    // A value about to outlive the expression that made it: a view that
+    // would pin a parent more than four times its size becomes a String.
+    static Object compact(Object value) {
+        if (!(value instanceof StringView)) return value;
+
+        StringView view = (StringView)value;
+        if (view.parent.length() >= LARGE && view.length * 4 < view.parent.length()) {
+            return view.toString();
+        }
+        return value;
+    }
+
+    void appendTo(StringBuilder builder) {
+        builder.append(parent, offset, offset + length);
+    }
+
+    void getChars(char[] chars, int position) {
+        parent.getChars(offset, offset + length, chars, position);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        return parent.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+        }
+        return of(parent, offset + start, offset + end);
+    }
+
+    @Override
+    public String toString() {
+        String flat = this.flat;
+        if (flat == null) {
+            flat = parent.substring(offset, offset + length);
+            this.flat = flat;
+        }
+        return flat;
+    }
+}
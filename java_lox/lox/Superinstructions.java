@@ -0,0 +1,122 @@
+package java_lox.lox;
+
+// Fused nodes for the idioms that dominate our profiles. Each one is a
+// subclass of the node it stands for, with the same fields, so the Resolver,
+// the AST cache, the printers and the hot-spot counter keep seeing an
+// ordinary node. Only the plain Interpreter takes the fused path, doing the
+// whole idiom in one dispatch instead of one per child; when the operands
+// aren't what the fast path expects it falls back to the plain visit method.
+// CountingInterpreter takes the plain path too, so --hotspots still counts
+// every child node.
+//
+// The Parser and the AstReader build nodes through these factories, which
+// return the plain node when the shape doesn't match.
+final class Superinstructions {
+    private Superinstructions() {}
+
+    static Expr assign(Token name, Expr value) {
+        if (value instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)value;
+            if (binary.operator.type == TokenType.PLUS &&
+                isVariable(binary.left, name.lexeme) && isNumber(binary.right)) {
+                return new IncrementLocal(name, binary);
+            }
+        }
+        return new Expr.Assign(name, value);
+    }
+
+    static Expr binary(Expr left, Token operator, Expr right) {
+        if (operator.type == TokenType.LESS && left instanceof Expr.Variable && isNumber(right)) {
+            return new LessLocalConst(left, operator, right);
+        }
+        return new Expr.Binary(left, operator, right);
+    }
+
+    static Expr get(Expr object, Token name) {
+        if (object instanceof Expr.Self) return new GetSelfField(object, name);
+        return new Expr.Get(object, name);
+    }
+
+    static Stmt print(Expr expression) {
+        if (expression instanceof Expr.Variable) return new PrintLocal(expression);
+        return new Stmt.Print(expression);
+    }
+
+    private static boolean isVariable(Expr expr, String name) {
+        return expr instanceof Expr.Variable && ((Expr.Variable)expr).name.lexeme.equals(name);
+    }
+
+    private static boolean isNumber(Expr expr) {
+        return expr instanceof Expr.Literal && LoxNumbers.isNumber(((Expr.Literal)expr).value);
+    }
+
+    // i = i + <number>
+    static final class IncrementLocal extends Expr.Assign {
+        final Object delta;
+
+        IncrementLocal(Token name, Expr.Binary value) {
+            super(name, value);
+            this.delta = ((Expr.Literal)value.right).value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <R> R accept(Expr.Visitor<R> visitor) {
+            if (visitor.getClass() == Interpreter.class) return (R)((Interpreter)visitor).incrementLocal(this);
+            return super.accept(visitor);
+        }
+    }
+
+    // i < <number>
+    static final class LessLocalConst extends Expr.Binary {
+        final Expr.Variable variable;
+        final Object constant;
+
+        LessLocalConst(Expr left, Token operator, Expr right) {
+            super(left, operator, right);
+            this.variable = (Expr.Variable)left;
+            this.constant = ((Expr.Literal)right).value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <R> R accept(Expr.Visitor<R> visitor) {
+            if (visitor.getClass() == Interpreter.class) return (R)((Interpreter)visitor).lessLocalConst(this);
+            return super.accept(visitor);
+        }
+    }
+
+    // self.field
+    static final class GetSelfField extends Expr.Get {
+        final Expr.Self self;
+
+        GetSelfField(Expr object, Token name) {
+            super(object, name);
+            this.self = (Expr.Self)object;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <R> R accept(Expr.Visitor<R> visitor) {
+            if (visitor.getClass() == Interpreter.class) return (R)((Interpreter)visitor).getSelfField(this);
+            return super.accept(visitor);
+        }
+    }
+
+    // print variable;
+    static final class PrintLocal extends Stmt.Print {
+        final Expr.Variable variable;
+
+        PrintLocal(Expr expression) {
+            super(expression);
+            this.variable = (Expr.Variable)expression;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <R> R accept(Stmt.Visitor<R> visitor) {
+            if (visitor.getClass() == Interpreter.class) return (R)((Interpreter)visitor).printLocal(this);
+            return super.accept(visitor);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package java_lox.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Where a switch jumps for each case label, built once when the switch is
+// parsed or loaded. Dense integer labels index an array; anything else goes
+// through a hash map. Lox numbers are canonical (see LoxNumbers) and strings
+// are looked up by content, so a hit is exactly what == would match.
+final class SwitchTable {
+    // an array may be at most this many times larger than the label count
+    private static final int SPREAD = 4;
+
+    private final long min;
+    private final int[] jumps;
+    private final Map<Object, Integer> cases;
+
+    private SwitchTable(long min, int[] jumps, Map<Object, Integer> cases) {
+        this.min = min;
+        this.jumps = jumps;
+        this.cases = cases;
+    }
+
+    // labels.get(i) holds the labels of case i; labels are distinct
+    static SwitchTable of(List<List<Object>> labels) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int count = 0;
+        boolean integers = true;
+        for (List<Object> values : labels) {
+            for (Object value : values) {
+                count++;
+                if (!(value instanceof Long)) {
+                    integers = false;
+                    continue;
+                }
+                min = Math.min(min, (long)value);
+                max = Math.max(max, (long)value);
+            }
+        }
+
+        if (integers && count > 0 && max - min >= 0 && max - min < (long)count * SPREAD) {
+            int[] jumps = new int[(int)(max - min + 1)];
+            Arrays.fill(jumps, -1);
+            for (int i = 0; i < labels.size(); i++) {
+                for (Object value : labels.get(i)) jumps[(int)((long)value - min)] = i;
+            }
+            return new SwitchTable(min, jumps, null);
+        }
+
+        Map<Object, Integer> cases = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            for (Object value : labels.get(i)) cases.put(value, i);
+        }
+        return new SwitchTable(0, null, cases);
+    }
+
+    // the index of the case for value, or -1 for the default
+    int lookup(Object value) {
+        if (jumps != null) {
+            if (!(value instanceof Long)) return -1;
+            long offset = (long)value - min;
+            if (offset < 0 || offset >= jumps.length) return -1;
+            return jumps[(int)offset];
+        }
+
+        if (value instanceof CharSequence) value = value.toString();
+        Integer index = cases.get(value);
+        return index == null ? -1 : index;
+    }
+}
@@ -0,0 +1,164 @@
+package java_lox.lox;
+
+import java.util.Arrays;
+
+import static java_lox.lox.TokenType.*;
+
+// Struct-of-arrays token stream. A token is an index into parallel primitive
+// arrays; Token objects are only built when the parser needs one for the AST
+// or for an error message. Identifiers, strings and numbers refer to their
+// interned LexemeTable entry, every other token has a fixed lexeme.
+class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final String[] FIXED_LEXEMES = new String[TYPES.length];
+
+    static {
+        for (TokenType type : TYPES) {
+            FIXED_LEXEMES[type.ordinal()] = fixedLexeme(type);
+        }
+    }
+
+    private final LexemeTable lexemes;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] literals; // LexemeTable id, or -1
+    private int size = 0;
+
+    TokenBuffer(LexemeTable lexemes, int capacity) {
+        this.lexemes = lexemes;
+        capacity = Math.max(capacity, 16);
+        types = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        lines = new int[capacity];
+        literals = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int end, int line, int literal) {
+        if (size == types.length) grow();
+        types[size] = (byte)type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        literals[size] = literal;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    String lexeme(int index) {
+        int literal = literals[index];
+        if (literal < 0) return FIXED_LEXEMES[types[index]];
+        return lexemes.get(literal).lexeme;
+    }
+
+    Object literal(int index) {
+        int literal = literals[index];
+        if (literal < 0 || types[index] == IDENTIFIER.ordinal()) return null;
+        return lexemes.get(literal).literal;
+    }
+
+    // materialize a Token for the AST or an error message
+    Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index]);
+    }
+
+    // an empty buffer sharing this buffer's lexeme table
+    TokenBuffer fork() {
+        return new TokenBuffer(lexemes, 16);
+    }
+
+    void copyTo(int index, TokenBuffer target) {
+        target.add(type(index), starts[index], ends[index], lines[index], literals[index]);
+    }
+
+    // drop the first count tokens once the parser no longer needs them
+    void discard(int count) {
+        int kept = size - count;
+        System.arraycopy(types, count, types, 0, kept);
+        System.arraycopy(starts, count, starts, 0, kept);
+        System.arraycopy(ends, count, ends, 0, kept);
+        System.arraycopy(lines, count, lines, 0, kept);
+        System.arraycopy(literals, count, literals, 0, kept);
+        size = kept;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        literals = Arrays.copyOf(literals, capacity);
+    }
+
+    // punctuation and keyword lexemes are shared constants, never copied out of the source
+    private static String fixedLexeme(TokenType type) {
+        switch (type) {
+            case LEFT_PAREN:    return "(";
+            case RIGHT_PAREN:   return ")";
+            case LEFT_BRACE:    return "{";
+            case RIGHT_BRACE:   return "}";
+            case COMMA:         return ",";
+            case DOT:           return ".";
+            case MINUS:         return "-";
+            case PLUS:          return "+";
+            case SEMICOLON:     return ";";
+            case SLASH:         return "/";
+            case STAR:          return "*";
+            case QUESTION:      return "?";
+            case COLON:         return ":";
+            case BANG:          return "!";
+            case BANG_EQUAL:    return "!=";
+            case EQUAL:         return "=";
+            case EQUAL_EQUAL:   return "==";
+            case GREATER:       return ">";
+            case GREATER_EQUAL: return ">=";
+            case LESS:          return "<";
+            case LESS_EQUAL:    return "<=";
+            case AND:           return "and";
+            case BREAK:         return "break";
+            case CASE:          return "case";
+            case CLASS:         return "class";
+            case CONTINUE:      return "continue";
+            case DEFAULT:       return "default";
+            case ELSE:          return "else";
+            case FALSE:         return "false";
+            case FOR:           return "for";
+            case FUN:           return "fun";
+            case IF:            return "if";
+            case NIL:           return "nil";
+            case OR:            return "or";
+            case PRINT:         return "print";
+            case RETURN:        return "return";
+            case SUPER:         return "super";
+            case SELF:          return "self";
+            case SWITCH:        return "switch";
+            case TRUE:          return "true";
+            case VAR:           return "var";
+            case WHILE:         return "while";
+            default:            return "";
+        }
+    }
+}
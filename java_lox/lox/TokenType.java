@@ -15,8 +15,8 @@ enum TokenType {
     IDENTIFIER, STRING, NUMBER,
 
     // Keywords
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR, ELSE_IF,
-    PRINT, RETURN, SUPER, SELF, TRUE, VAR, WHILE,
+    AND, BREAK, CASE, CLASS, CONTINUE, DEFAULT, ELSE, FALSE, FUN, FOR, IF, NIL, OR, ELSE_IF,
+    PRINT, RETURN, SUPER, SELF, SWITCH, TRUE, VAR, WHILE,
 
     EOF
 }
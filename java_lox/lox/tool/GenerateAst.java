@@ -33,14 +33,17 @@ public class GenerateAst {
 
         defineAst(outputDir, "Stmt", Arrays.asList(
             "Block      : List<Stmt> statements",
+            "Break           : Token keyword",
             "Class           : Token name, List<Stmt.Function> methods, Expr.Variable superclass, List<Stmt.Function> classMethods",
+            "Continue        : Token keyword",
             "Expression      : Expr expression",
             "Function        : Token name, Expr.Function function",
             "If              : Expr condition, Stmt thenBranch," + 
                                " Stmt elseBranch",
             "Print           : Expr expression",
             "Return          : Token keyword, Expr value",
-            "While           : Expr condition, Stmt body",
+            "Switch          : Token keyword, Expr value, List<List<Object>> labels, List<Stmt> bodies, Stmt otherwise, SwitchTable table",
+            "While           : Expr condition, Stmt body, Expr increment",
             "Var             : Token name, Expr initializer"
         ));
     }